@@ -3,14 +3,35 @@ package com.memosystem.common.exception;
 /**
  * LLM 调用异常
  * 当调用 LLM API 失败时抛出
+ * 如果失败来自 HTTP 响应，statusCode 为响应状态码，否则为 0
  */
 public class LLMClientException extends MemorySystemException {
 
+    private final int statusCode;
+
     public LLMClientException(String message) {
         super(message);
+        this.statusCode = 0;
     }
 
     public LLMClientException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = 0;
+    }
+
+    public LLMClientException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 是否被服务端限流（HTTP 429）
+     */
+    public boolean isRateLimited() {
+        return statusCode == 429;
     }
 }
@@ -8,26 +8,83 @@ import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 /**
  * 内容数据访问对象
  * 负责内容的序列化和持久化操作
+ *
+ * 并发策略：
+ * - 写操作按文件路径分段加锁（striped lock），同一文件的读-改-写串行，不同文件互不阻塞
+ * - 写入先落到同目录临时文件，再原子重命名替换，崩溃时不会留下截断的文件
+ * - 读操作无需加锁，总是读到某个完整版本
  */
 @Slf4j
 public class CommonFileRepository {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    /**
+     * 分段锁数量（2 的幂）
+     */
+    private static final int LOCK_STRIPES = 64;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 获取文件对应的分段锁
+     */
+    private static ReentrantLock lockFor(Path path) {
+        int hash = path.toAbsolutePath().normalize().hashCode();
+        hash ^= (hash >>> 16);
+        return LOCKS[hash & (LOCK_STRIPES - 1)];
+    }
+
     /**
      * 将内容追加保存到 JSON 文件（作为数组元素）
      * 修复：不使用泛型 TypeToken，直接操作 JsonArray
      */
     public static <T> void save(String fileName, T content) {
         Path path = Paths.get(fileName);
+        ReentrantLock lock = lockFor(path);
+        lock.lock();
+        try {
+            appendUnderLock(path, content);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 以整体替换的方式写入 JSON 文件（非追加）
+     * 适用于清单、索引等需要整体覆盖的小文件
+     */
+    public static <T> void overwrite(String fileName, T content) {
+        Path path = Paths.get(fileName);
+        ReentrantLock lock = lockFor(path);
+        lock.lock();
+        try {
+            writeAtomically(path, GSON.toJsonTree(content));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在持有文件锁的前提下执行读-改-写
+     */
+    private static <T> void appendUnderLock(Path path, T content) {
         JsonArray list;
 
         // 读取现有内容
@@ -52,12 +109,41 @@ public class CommonFileRepository {
         list.add(newElement);
 
         // 写回文件
-        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            GSON.toJson(list, writer);
+        writeAtomically(path, list);
+    }
+
+    /**
+     * 先写临时文件再原子替换目标文件
+     */
+    private static void writeAtomically(Path path, JsonElement content) {
+        Path absolute = path.toAbsolutePath();
+        Path dir = absolute.getParent();
+        Path tmp = null;
+        try {
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            tmp = Files.createTempFile(dir, absolute.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(content, writer);
+            }
+            try {
+                Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.debug("文件系统不支持原子移动，退化为普通替换: {}", absolute);
+                Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.debug("清理临时文件失败: {}", tmp);
+                }
+            }
         }
     }
 
@@ -65,6 +151,14 @@ public class CommonFileRepository {
      * 加载最后一条匹配 sessionId 的内容
      */
     public static <T> Optional<T> loadLastContent(String sessionId, String fileName, Class<T> clazz) {
+        return loadLastContent(sessionId, fileName, clazz, content -> true);
+    }
+
+    /**
+     * 加载最后一条匹配 sessionId 且满足过滤条件的内容
+     */
+    public static <T> Optional<T> loadLastContent(String sessionId, String fileName, Class<T> clazz,
+            Predicate<T> filter) {
         Path path = Paths.get(fileName);
         if (!Files.exists(path)) {
             return Optional.empty();
@@ -93,7 +187,10 @@ public class CommonFileRepository {
                     continue;
                 }
 
-                return Optional.of(GSON.fromJson(jsonObject, clazz));
+                T content = GSON.fromJson(jsonObject, clazz);
+                if (filter.test(content)) {
+                    return Optional.of(content);
+                }
             }
 
         } catch (IOException | JsonSyntaxException e) {
@@ -162,4 +259,30 @@ public class CommonFileRepository {
 
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * 从输入流中读取 JSON 数组的全部元素
+     * 调用方负责关闭 reader，可用于读取压缩后的分段文件
+     *
+     * @param reader 数据源
+     * @param clazz  目标类型
+     * @return 元素列表（保持文件中的顺序）
+     */
+    public static <T> java.util.List<T> loadAll(Reader reader, Class<T> clazz) {
+        java.util.List<T> result = new java.util.ArrayList<>();
+        try {
+            JsonElement root = JsonParser.parseReader(reader);
+            if (root == null || !root.isJsonArray()) {
+                return result;
+            }
+            for (JsonElement element : root.getAsJsonArray()) {
+                if (element.isJsonObject()) {
+                    result.add(GSON.fromJson(element, clazz));
+                }
+            }
+        } catch (JsonParseException e) {
+            log.warn("读取 JSON 数组失败: {}", e.getMessage());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package com.memosystem.common.util;
+
+/**
+ * Token 数量估算工具
+ * 不依赖具体分词器，按字符类别做低成本估算，用于提示词预算控制
+ *
+ * 估算规则：
+ * - 中日韩文字：每个字符约 1 个 token
+ * - 拉丁字母、数字等其他非空白字符：约 4 个字符 1 个 token
+ * - 空白字符不计
+ */
+public final class TokenEstimator {
+
+    private static final double LATIN_CHARS_PER_TOKEN = 4.0;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的 token 数
+     *
+     * @param text 文本
+     * @return 估算的 token 数（空文本为 0）
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (Character.isWhitespace(cp)) {
+                continue;
+            }
+            if (isCjk(cp)) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (int) Math.ceil(other / LATIN_CHARS_PER_TOKEN);
+    }
+
+    /**
+     * 按 token 预算截断文本，超出时追加省略号
+     *
+     * @param text      文本
+     * @param maxTokens 最大 token 数
+     * @return 截断后的文本
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null) {
+            return "";
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        if (estimate(text) <= maxTokens) {
+            return text;
+        }
+
+        int cjk = 0;
+        int other = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int cp = text.codePointAt(end);
+            if (!Character.isWhitespace(cp)) {
+                if (isCjk(cp)) {
+                    cjk++;
+                } else {
+                    other++;
+                }
+                if (cjk + (int) Math.ceil(other / LATIN_CHARS_PER_TOKEN) > maxTokens) {
+                    break;
+                }
+            }
+            end += Character.charCount(cp);
+        }
+        return text.substring(0, end) + "...";
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || Character.UnicodeBlock.of(codePoint) == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || Character.UnicodeBlock.of(codePoint) == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS;
+    }
+}
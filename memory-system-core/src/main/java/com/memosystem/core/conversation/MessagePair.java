@@ -1,6 +1,5 @@
 package com.memosystem.core.conversation;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -9,11 +8,18 @@ import lombok.NoArgsConstructor;
  * 用于存储用户消息和对应的AI响应
  */
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class MessagePair {
     private String sessionId;    // 会话ID
     private String userMessage;  // 用户输入的消息
     private String aiResponse;   // AI 生成的响应
     private long timestamp;      // 消息创建的时间戳
+    private transient long id;   // 存储中的消息ID，仅在读取时填充，与时间戳一起作为分页游标
+
+    public MessagePair(String sessionId, String userMessage, String aiResponse, long timestamp) {
+        this.sessionId = sessionId;
+        this.userMessage = userMessage;
+        this.aiResponse = aiResponse;
+        this.timestamp = timestamp;
+    }
 }
@@ -0,0 +1,19 @@
+package com.memosystem.core.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 融合调用结果数据模型
+ * 一次 LLM 调用同时得到的候选记忆与更新后的全局摘要
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExtractionWithSummary {
+    private List<CandidateMemory> facts;  // 抽取得到的候选记忆
+    private String summary;               // 更新后的全局摘要，未生成时为 null
+}
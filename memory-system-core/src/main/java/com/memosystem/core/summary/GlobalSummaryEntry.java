@@ -11,5 +11,14 @@ import lombok.NoArgsConstructor;
 public class GlobalSummaryEntry {
     private String sessionId;   // 会话ID
     private String globalSummary; // 全局摘要内容
+    private int rolledUpTurn;     // 已汇总进全局摘要的最后一轮（分层摘要模式，之后的分段摘要尚未汇总）
+    private boolean temporary;    // 是否为临时摘要（正式摘要后追加了尚未汇总的消息对），重启加载时跳过
 
+    public GlobalSummaryEntry(String sessionId, String globalSummary) {
+        this(sessionId, globalSummary, 0);
+    }
+
+    public GlobalSummaryEntry(String sessionId, String globalSummary, int rolledUpTurn) {
+        this(sessionId, globalSummary, rolledUpTurn, false);
+    }
 }
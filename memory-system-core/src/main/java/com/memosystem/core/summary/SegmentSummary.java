@@ -0,0 +1,21 @@
+package com.memosystem.core.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 分段摘要数据模型
+ * 一段连续对话轮次（第 firstTurn 至 lastTurn 轮，从 1 计）压缩得到的摘要，
+ * 位于原始对话与会话全局摘要之间的中间层级
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentSummary {
+    private String sessionId;  // 会话ID
+    private int firstTurn;     // 覆盖的第一轮
+    private int lastTurn;      // 覆盖的最后一轮
+    private String summary;    // 分段摘要内容
+    private long createdAt;    // 生成时间
+}
@@ -0,0 +1,18 @@
+package com.memosystem.core.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 全局摘要快照
+ * 某一时刻会话的最新摘要及其版本号，版本号在该会话每次写入摘要时单调递增
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SummarySnapshot {
+    private String globalSummary; // 摘要内容
+    private long version;         // 版本号
+    private boolean temporary;    // 是否为追加了最新消息对的临时摘要
+}
@@ -0,0 +1,346 @@
+package com.memosystem.adapter.llm;
+
+import com.memosystem.common.exception.LLMClientException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LLM 准入控制
+ * 按模型限制上游调用，所有 LLMClient 共享：
+ * - 令牌桶：每分钟请求数、每分钟 token 数（按请求体估算）
+ * - AIMD 自适应并发：调用成功且延迟达标时并发上限缓慢增加，
+ *   延迟超标时小幅下降，收到 429 时减半
+ * - 公平排队：等待中的请求按会话分队列，轮询出队，单个会话的突发不会饿死其他会话
+ *
+ * 准入是非阻塞的：acquire 返回 Future，放行时完成；调用结束后必须释放许可
+ */
+@Slf4j
+public class LLMAdmissionController implements AutoCloseable {
+
+    private static final double DECREASE_ON_RATE_LIMIT = 0.5;
+    private static final double DECREASE_ON_SLOW = 0.9;
+
+    private final LLMConfig.LLMProperties.RateLimit config;
+    private final Map<String, ModelLimiter> limiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public LLMAdmissionController(LLMConfig.LLMProperties.RateLimit config) {
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mem0-llm-admission");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @param model           模型名称
+     * @param sessionId       所属会话（公平排队的单位）
+     * @param estimatedTokens 估算的请求 token 数
+     * @return 放行时完成的 Future；排队已满时以 LLMClientException 完成
+     */
+    public CompletableFuture<Permit> acquire(String model, String sessionId, int estimatedTokens) {
+        return limiterFor(model).enqueue(sessionId, estimatedTokens);
+    }
+
+    /**
+     * 获取准入统计信息（按模型分组）
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        limiters.values().forEach(limiter -> {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(limiter.describe());
+        });
+        return sb.length() == 0 ? "暂无调用" : sb.toString();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private ModelLimiter limiterFor(String model) {
+        return limiters.computeIfAbsent(model != null ? model : "unknown", ModelLimiter::new);
+    }
+
+    /**
+     * 调用许可，调用结束后释放并报告结果，用于调整并发上限
+     * 上报的延迟为许可发放到调用结束的时间；流式调用在收到响应头时调用 markFirstByte，
+     * 改为上报首字节延迟，避免正常的长时间流式输出被当作慢调用而压低并发上限
+     */
+    public final class Permit {
+        private final ModelLimiter limiter;
+        private final long grantedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private final AtomicLong firstByteAt = new AtomicLong();
+
+        private Permit(ModelLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * 释放许可（重复调用无效）
+         *
+         * @param error 调用异常，成功时为 null
+         */
+        public void release(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                long endedAt = firstByteAt.get();
+                limiter.onRelease((endedAt != 0 ? endedAt : System.nanoTime()) - grantedAt, error);
+            }
+        }
+
+        /**
+         * 记录收到首字节的时间（只记录第一次），之后释放时以此计算延迟
+         */
+        public void markFirstByte() {
+            firstByteAt.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Ticket {
+        private final int tokens;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private Ticket(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * 令牌桶，容量为每分钟配额，按纳秒连续补充；配额不大于 0 时不限制
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefill = System.nanoTime();
+
+        private TokenBucket(int perMinute) {
+            this.capacity = Math.max(0, perMinute);
+            this.refillPerNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+        }
+
+        private boolean unlimited() {
+            return capacity <= 0;
+        }
+
+        private double clamp(double amount) {
+            return Math.min(amount, capacity);
+        }
+
+        private long nanosUntil(double amount) {
+            if (unlimited()) {
+                return 0;
+            }
+            refill();
+            double needed = clamp(amount) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil(needed / refillPerNano);
+        }
+
+        private void take(double amount) {
+            if (!unlimited()) {
+                available -= clamp(amount);
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * 单个模型的限流器
+     */
+    private final class ModelLimiter {
+        private final String model;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TokenBucket requestBucket;
+        private final TokenBucket tokenBucket;
+        private final LinkedHashMap<String, ArrayDeque<Ticket>> queues = new LinkedHashMap<>();
+        private double limit;
+        private int inFlight;
+        private int queued;
+        private boolean wakeupScheduled;
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private ModelLimiter(String model) {
+            this.model = model;
+            LLMConfig.LLMProperties.RateLimit.ModelLimit override = config.getModels().get(model);
+            int requestsPerMinute = override != null && override.getRequestsPerMinute() != null
+                    ? override.getRequestsPerMinute()
+                    : config.getRequestsPerMinute();
+            int tokensPerMinute = override != null && override.getTokensPerMinute() != null
+                    ? override.getTokensPerMinute()
+                    : config.getTokensPerMinute();
+            this.requestBucket = new TokenBucket(requestsPerMinute);
+            this.tokenBucket = new TokenBucket(tokensPerMinute);
+            this.limit = config.getInitialConcurrency();
+        }
+
+        private CompletableFuture<Permit> enqueue(String sessionId, int estimatedTokens) {
+            Ticket ticket = new Ticket(Math.max(0, estimatedTokens));
+            lock.lock();
+            try {
+                if (queued >= config.getMaxQueuedRequests()) {
+                    rejected.increment();
+                    return CompletableFuture.failedFuture(
+                            new LLMClientException("LLM 请求排队已满，模型：" + model));
+                }
+                queues.computeIfAbsent(sessionId, k -> new ArrayDeque<>()).addLast(ticket);
+                queued++;
+            } finally {
+                lock.unlock();
+            }
+            ticket.future.whenComplete((permit, ex) -> {
+                if (ticket.future.isCancelled()) {
+                    dequeue(sessionId, ticket);
+                }
+            });
+            dispatch();
+            return ticket.future;
+        }
+
+        /**
+         * 调用方在排队期间取消时移出队列；已放行的请求由 dispatch 归还许可
+         */
+        private void dequeue(String sessionId, Ticket ticket) {
+            lock.lock();
+            try {
+                ArrayDeque<Ticket> queue = queues.get(sessionId);
+                if (queue == null || !queue.remove(ticket)) {
+                    return;
+                }
+                if (queue.isEmpty()) {
+                    queues.remove(sessionId);
+                }
+                queued--;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void onRelease(long latencyNanos, Throwable error) {
+            lock.lock();
+            try {
+                inFlight--;
+                if (error instanceof CancellationException) {
+                    // 调用被取消（如对冲落败），耗时不反映上游状况，不调整并发上限
+                    log.debug("模型 {} 的调用被取消，归还并发名额", model);
+                } else if (error instanceof LLMClientException e && e.isRateLimited()) {
+                    rateLimited.increment();
+                    limit = Math.max(config.getMinConcurrency(), limit * DECREASE_ON_RATE_LIMIT);
+                    log.warn("模型 {} 被限流（429），并发上限降至 {}", model, (int) limit);
+                } else if (TimeUnit.NANOSECONDS.toMillis(latencyNanos) > config.getLatencyTargetMillis()) {
+                    limit = Math.max(config.getMinConcurrency(), limit * DECREASE_ON_SLOW);
+                } else if (error == null) {
+                    limit = Math.min(config.getMaxConcurrency(), limit + 1.0 / limit);
+                }
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+        }
+
+        /**
+         * 在并发与配额允许的范围内按会话轮询放行请求；配额不足时定时重试
+         */
+        private void dispatch() {
+            List<Ticket> granted = new ArrayList<>();
+            lock.lock();
+            try {
+                while (queued > 0 && inFlight < Math.max(1, (int) limit)) {
+                    Iterator<Map.Entry<String, ArrayDeque<Ticket>>> it = queues.entrySet().iterator();
+                    Map.Entry<String, ArrayDeque<Ticket>> next = it.next();
+                    Ticket ticket = next.getValue().peekFirst();
+
+                    long waitNanos = Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(ticket.tokens));
+                    if (waitNanos > 0) {
+                        scheduleWakeup(waitNanos);
+                        break;
+                    }
+
+                    requestBucket.take(1);
+                    tokenBucket.take(ticket.tokens);
+                    next.getValue().pollFirst();
+                    // 轮询：该会话移到队尾，空队列直接移除
+                    it.remove();
+                    if (!next.getValue().isEmpty()) {
+                        queues.put(next.getKey(), next.getValue());
+                    }
+                    queued--;
+                    inFlight++;
+                    admitted.increment();
+                    granted.add(ticket);
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 在锁外完成 Future，避免在锁内执行调用方的后续逻辑
+            // 放行前已被取消的请求直接归还许可
+            granted.forEach(ticket -> {
+                Permit permit = new Permit(this);
+                if (!ticket.future.complete(permit)) {
+                    permit.release(new CancellationException());
+                }
+            });
+        }
+
+        private void scheduleWakeup(long waitNanos) {
+            if (wakeupScheduled) {
+                return;
+            }
+            wakeupScheduled = true;
+            scheduler.schedule(() -> {
+                lock.lock();
+                try {
+                    wakeupScheduled = false;
+                } finally {
+                    lock.unlock();
+                }
+                dispatch();
+            }, waitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private String describe() {
+            lock.lock();
+            try {
+                return String.format("%s: 并发上限 %d, 进行中 %d, 排队 %d（%d 个会话）, 放行 %d, 429 %d, 拒绝 %d",
+                        model, Math.max(1, (int) limit), inFlight, queued, queues.size(),
+                        admitted.sum(), rateLimited.sum(), rejected.sum());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
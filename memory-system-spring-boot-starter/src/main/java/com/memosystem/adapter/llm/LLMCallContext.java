@@ -0,0 +1,50 @@
+package com.memosystem.adapter.llm;
+
+import java.util.function.Supplier;
+
+/**
+ * LLM 调用上下文
+ * 在发起 LLM 调用的线程上标记所属会话，供准入控制按会话公平排队；
+ * LLMClient 在方法调用时（同步地）读取该标记，因此只需包住发起调用的那一段代码
+ */
+public final class LLMCallContext {
+
+    /**
+     * 未标记会话时使用的默认会话
+     */
+    public static final String DEFAULT_SESSION = "default";
+
+    private static final ThreadLocal<String> SESSION = new ThreadLocal<>();
+
+    private LLMCallContext() {
+    }
+
+    /**
+     * 以指定会话身份执行调用
+     *
+     * @param sessionId 会话 ID
+     * @param call      发起 LLM 调用的代码
+     * @return 调用结果
+     */
+    public static <T> T withSession(String sessionId, Supplier<T> call) {
+        String previous = SESSION.get();
+        SESSION.set(sessionId);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                SESSION.remove();
+            } else {
+                SESSION.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程所属的会话，未标记时返回默认会话
+     */
+    public static String currentSession() {
+        String sessionId = SESSION.get();
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+}
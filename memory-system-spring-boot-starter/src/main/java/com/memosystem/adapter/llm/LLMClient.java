@@ -2,7 +2,9 @@ package com.memosystem.adapter.llm;
 
 import com.memosystem.common.exception.LLMClientException;
 import com.memosystem.common.exception.JsonParseException;
+import com.memosystem.common.util.TokenEstimator;
 import com.memosystem.core.memory.CandidateMemory;
+import com.memosystem.core.memory.ExtractionWithSummary;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -11,10 +13,19 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.memosystem.config.MemoryPrompts;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -26,15 +37,26 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * LLM 客户端，用于调用 OpenAI 兼容 API
  * 实现 LLMClientInterface 接口
  * 
  * 所有配置通过构造函数传入，不依赖静态方法
+ * 每个实例持有一个共享的 HTTP 连接池，连接在多次调用间复用，关闭 Bean 时释放
  */
 @Slf4j
-public class LLMClient implements LLMClientInterface {
+public class LLMClient implements LLMClientInterface, AutoCloseable {
     private final String apiKey;
     private final String model;
     private final String chatCompletionEndpoint;
@@ -44,12 +66,46 @@ public class LLMClient implements LLMClientInterface {
     private final int maxTokens;
     private final Gson gson = new Gson();
     private final HttpClient httpClient;
+    private final CloseableHttpClient pooledHttpClient;
+    private final LLMResponseCache responseCache;
+    private final LLMRequestCoalescer requestCoalescer;
+    private final LLMAdmissionController admissionController;
+    private final LLMRetryPolicy retryPolicy;
+    private final LLMHedgingPolicy hedgingPolicy;
+    private final LLMClientGuard guard;
 
     /**
-     * 完整构造函数：接收所有必要的配置参数
+     * 构造函数：使用默认连接池配置
      */
     public LLMClient(String apiKey, String model, String chatCompletionEndpoint,
             int connectTimeout, int apiTimeout, double temperature, int maxTokens) {
+        this(apiKey, model, chatCompletionEndpoint, connectTimeout, apiTimeout, temperature, maxTokens,
+                new LLMConfig.LLMProperties.Pool());
+    }
+
+    /**
+     * 构造函数：不启用响应缓存、准入控制、重试、对冲与熔断隔离
+     */
+    public LLMClient(String apiKey, String model, String chatCompletionEndpoint,
+            int connectTimeout, int apiTimeout, double temperature, int maxTokens,
+            LLMConfig.LLMProperties.Pool pool) {
+        this(apiKey, model, chatCompletionEndpoint, connectTimeout, apiTimeout, temperature, maxTokens, pool,
+                null, null, null, null, null, null);
+    }
+
+    /**
+     * 完整构造函数：接收所有必要的配置参数
+     * responseCache 可为 null；仅当 temperature 为 0 时才会使用缓存
+     * requestCoalescer 可在多个客户端之间共享，为 null 时使用本实例独享的合并器
+     * admissionController 为 null 时不做准入控制
+     * retryPolicy 为 null 时失败不重试；hedgingPolicy 为 null 时对话调用不对冲
+     * guard 为本客户端独享的熔断器与舱壁，为 null 时不做隔离
+     */
+    public LLMClient(String apiKey, String model, String chatCompletionEndpoint,
+            int connectTimeout, int apiTimeout, double temperature, int maxTokens,
+            LLMConfig.LLMProperties.Pool pool, LLMResponseCache responseCache,
+            LLMRequestCoalescer requestCoalescer, LLMAdmissionController admissionController,
+            LLMRetryPolicy retryPolicy, LLMHedgingPolicy hedgingPolicy, LLMClientGuard guard) {
         this.apiKey = apiKey;
         this.model = model;
         this.chatCompletionEndpoint = chatCompletionEndpoint;
@@ -60,23 +116,185 @@ public class LLMClient implements LLMClientInterface {
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(connectTimeout))
                 .build();
+        this.pooledHttpClient = createPooledHttpClient(pool, retryPolicy != null);
+        this.responseCache = temperature == 0.0 ? responseCache : null;
+        this.requestCoalescer = requestCoalescer != null ? requestCoalescer : new LLMRequestCoalescer();
+        this.admissionController = admissionController;
+        this.retryPolicy = retryPolicy;
+        this.hedgingPolicy = hedgingPolicy;
+        this.guard = guard;
 
         if (this.apiKey == null || this.apiKey.isEmpty()) {
             log.warn("未配置 API 密钥，LLM 调用将失败");
         }
     }
 
+    /**
+     * 创建带连接池的 HTTP 客户端
+     * 按路由限制最大连接数，按配置保持长连接并定期清理空闲连接；
+     * 配置了重试策略时关闭连接池自带的重试，避免两层重试叠加
+     */
+    private CloseableHttpClient createPooledHttpClient(LLMConfig.LLMProperties.Pool pool, boolean externalRetry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(pool.getMaxConnectionsPerRoute())
+                .setMaxConnTotal(pool.getMaxConnectionsTotal())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofSeconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofSeconds(apiTimeout))
+                        .build())
+                .build();
+
+        TimeValue keepAlive = TimeValue.ofSeconds(pool.getKeepAliveSeconds());
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofSeconds(apiTimeout))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> keepAlive)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(pool.getIdleEvictSeconds()));
+        if (externalRetry) {
+            builder.disableAutomaticRetries();
+        }
+        return builder.build();
+    }
+
+    /**
+     * 关闭连接池，由 Spring 在销毁 Bean 时调用
+     */
+    @Override
+    public void close() {
+        pooledHttpClient.close(CloseMode.GRACEFUL);
+    }
+
     /**
      * 供记忆提取阶段调用，形成候选记忆列表
      */
     @Override
     public List<CandidateMemory> formCandidateMemories(String prompt) {
+        String body = buildExtractionBody(prompt);
+        return invoke(body, () -> sendForContent(body), this::parseMemoriesFromContent);
+    }
+
+    /**
+     * 异步形成候选记忆列表，基于 HttpClient.sendAsync，等待响应期间不占用调用线程
+     */
+    @Override
+    public CompletableFuture<List<CandidateMemory>> formCandidateMemoriesAsync(String prompt) {
+        String body;
+        try {
+            body = buildExtractionBody(prompt);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return invokeAsync(body, () -> sendForContentAsync(body), this::parseMemoriesFromContent, false);
+    }
+
+    /**
+     * 流式形成候选记忆列表
+     * 回复按增量解析，每条候选记忆在其 JSON 元素闭合时立即回调 onCandidate，
+     * 下游可以在模型继续生成后续事实的同时处理已到达的事实
+     *
+     * 响应缓存与非流式调用共用（相同提示词的流式/非流式请求对应同一个缓存键），缓存命中时逐条回调；
+     * 流式调用不参与请求合并。增量解析未得到任何事实时，对完整回复再做一次非流式的容错解析
+     */
+    @Override
+    public CompletableFuture<List<CandidateMemory>> formCandidateMemoriesStream(String prompt,
+            Consumer<CandidateMemory> onCandidate) {
+        return streamExtraction(prompt, onCandidate, (memories, content) -> memories);
+    }
+
+    /**
+     * 融合调用：一次请求同时得到候选记忆与更新后的全局摘要
+     * 回复格式为 {"facts": [...], "summary": "..."}，缓存、请求合并与重试逻辑同 formCandidateMemoriesAsync
+     */
+    public CompletableFuture<ExtractionWithSummary> formCandidateMemoriesWithSummaryAsync(String prompt) {
+        String body;
+        try {
+            body = buildExtractionBody(prompt);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return invokeAsync(body, () -> sendForContentAsync(body),
+                content -> new ExtractionWithSummary(parseMemoriesFromContent(content), parseSummaryFromContent(content)),
+                false);
+    }
+
+    /**
+     * 流式融合调用：候选记忆逐条回调，摘要在流结束后从完整回复中解析
+     */
+    public CompletableFuture<ExtractionWithSummary> formCandidateMemoriesWithSummaryStream(String prompt,
+            Consumer<CandidateMemory> onCandidate) {
+        return streamExtraction(prompt, onCandidate,
+                (memories, content) -> new ExtractionWithSummary(memories, parseSummaryFromContent(content)));
+    }
+
+    /**
+     * 流式抽取的公共流程，result 根据解析出的候选记忆与完整回复构建返回值
+     */
+    private <T> CompletableFuture<T> streamExtraction(String prompt, Consumer<CandidateMemory> onCandidate,
+            BiFunction<List<CandidateMemory>, String, T> result) {
+        String body;
+        try {
+            body = buildExtractionBody(prompt);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String key = LLMResponseCache.fingerprint(body);
+        if (responseCache != null) {
+            String cached = responseCache.get(model, key);
+            if (cached != null) {
+                log.debug("LLM 响应缓存命中，模型：{}", model);
+                try {
+                    List<CandidateMemory> memories = parseMemoriesFromContent(cached);
+                    memories.forEach(memory -> notifyCandidate(onCandidate, memory));
+                    return CompletableFuture.completedFuture(result.apply(memories, cached));
+                } catch (RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+        }
+
+        StreamingFactParser parser = new StreamingFactParser(onCandidate);
+        String streamBody = new JSONObject(body).put("stream", true).toString();
+        return streamCompletion(streamBody, parser::feed).thenApply(content -> {
+            List<CandidateMemory> memories = parser.getFacts();
+            if (memories.isEmpty()) {
+                // 增量解析失败（非常规格式）时退回完整解析，解析失败则抛出
+                memories = parseMemoriesFromContent(content);
+                memories.forEach(memory -> notifyCandidate(onCandidate, memory));
+            }
+            T value = result.apply(memories, content);
+            if (responseCache != null) {
+                responseCache.put(model, key, content);
+            }
+            log.debug("流式提取完成，得到 {} 个候选记忆", memories.size());
+            return value;
+        });
+    }
+
+    private static void notifyCandidate(Consumer<CandidateMemory> onCandidate, CandidateMemory memory) {
+        if (onCandidate == null) {
+            return;
+        }
+        try {
+            onCandidate.accept(memory);
+        } catch (RuntimeException e) {
+            log.warn("候选记忆回调处理失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 构建记忆提取请求体
+     */
+    private String buildExtractionBody(String prompt) {
         if (apiKey == null || apiKey.isEmpty()) {
             throw new LLMClientException("未配置 API Key，无法提取候选记忆");
         }
 
         // 组装请求体
-        JSONObject body = new JSONObject()
+        return new JSONObject()
                 .put("model", model)
                 .put("temperature", temperature)
                 .put("max_tokens", 4000)
@@ -86,40 +304,235 @@ public class LLMClient implements LLMClientInterface {
                                 .put("content", MemoryPrompts.CHINESE_CANDIDATE_MEMORY_EXTRACTION_PROMPT))
                         .put(new JSONObject()
                                 .put("role", "user")
-                                .put("content", prompt)));
+                                .put("content", prompt)))
+                .toString();
+    }
 
-        HttpRequest req = HttpRequest.newBuilder()
+    /**
+     * 发起一次非流式调用
+     * 先查响应缓存（仅 temperature=0 时启用），未命中时经请求合并后调用上游，
+     * 每次尝试都先经过熔断器与舱壁，再经过准入控制，暂时性失败按重试策略退避重试；
+     * 只有解析成功的回复才会写入缓存
+     */
+    private <T> T invoke(String requestBody, Supplier<String> call, Function<String, T> parser) {
+        String key = LLMResponseCache.fingerprint(requestBody);
+        if (responseCache != null) {
+            String cached = responseCache.get(model, key);
+            if (cached != null) {
+                log.debug("LLM 响应缓存命中，模型：{}", model);
+                return parser.apply(cached);
+            }
+        }
+
+        String sessionId = LLMCallContext.currentSession();
+        String content = requestCoalescer.execute(model, key,
+                () -> retried(() -> guarded(() -> admitted(sessionId, requestBody, call))));
+        T result = parser.apply(content);
+        if (responseCache != null) {
+            responseCache.put(model, key, content);
+        }
+        return result;
+    }
+
+    /**
+     * 异步发起一次非流式调用，缓存、请求合并与重试逻辑同 invoke
+     * hedgeable 为 true 且配置了对冲策略时，长尾调用会再发起一路对冲请求
+     */
+    private <T> CompletableFuture<T> invokeAsync(String requestBody, Supplier<CompletableFuture<String>> call,
+            Function<String, T> parser, boolean hedgeable) {
+        String key = LLMResponseCache.fingerprint(requestBody);
+        if (responseCache != null) {
+            String cached = responseCache.get(model, key);
+            if (cached != null) {
+                log.debug("LLM 响应缓存命中，模型：{}", model);
+                try {
+                    return CompletableFuture.completedFuture(parser.apply(cached));
+                } catch (RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+        }
+
+        String sessionId = LLMCallContext.currentSession();
+        Supplier<CompletableFuture<String>> attempt =
+                () -> retriedAsync(() -> guardedAsync(() -> admittedAsync(sessionId, requestBody, call)), e -> true);
+        Supplier<CompletableFuture<String>> upstream = hedgeable && hedgingPolicy != null
+                ? () -> hedgingPolicy.executeAsync(model, attempt)
+                : attempt;
+        return requestCoalescer.executeAsync(model, key, upstream)
+                .thenApply(content -> {
+                    T result = parser.apply(content);
+                    if (responseCache != null) {
+                        responseCache.put(model, key, content);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * 按重试策略同步调用，未配置重试时只调用一次
+     */
+    private String retried(Supplier<String> call) {
+        return retryPolicy != null ? retryPolicy.execute(model, call) : call.get();
+    }
+
+    /**
+     * 按重试策略异步调用，retryAllowed 可进一步限制是否允许重试
+     */
+    private CompletableFuture<String> retriedAsync(Supplier<CompletableFuture<String>> call,
+            Predicate<Throwable> retryAllowed) {
+        return retryPolicy != null ? retryPolicy.executeAsync(model, call, retryAllowed) : call.get();
+    }
+
+    /**
+     * 经熔断器与舱壁同步调用，熔断打开或并发已满时快速失败
+     */
+    private String guarded(Supplier<String> call) {
+        return guard != null ? guard.execute(call) : call.get();
+    }
+
+    /**
+     * 经熔断器与舱壁异步调用
+     */
+    private CompletableFuture<String> guardedAsync(Supplier<CompletableFuture<String>> call) {
+        return guard != null ? guard.executeAsync(call) : call.get();
+    }
+
+    /**
+     * 经准入控制后同步调用上游：排队等待许可，调用结束后释放并上报结果
+     */
+    private String admitted(String sessionId, String requestBody, Supplier<String> call) {
+        if (admissionController == null) {
+            return call.get();
+        }
+
+        LLMAdmissionController.Permit permit;
+        try {
+            permit = admissionController.acquire(model, sessionId, TokenEstimator.estimate(requestBody)).join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new LLMClientException("LLM 准入失败：" + cause.getMessage(), cause);
+        }
+
+        try {
+            String content = call.get();
+            permit.release(null);
+            return content;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 经准入控制后异步调用上游，等待许可期间不占用线程
+     */
+    private CompletableFuture<String> admittedAsync(String sessionId, String requestBody,
+            Supplier<CompletableFuture<String>> call) {
+        return admittedAsync(sessionId, requestBody, permit -> call.get());
+    }
+
+    /**
+     * 经准入控制后异步调用上游，调用方可使用许可（未启用准入控制时为 null），如流式调用标记首字节时间
+     */
+    private CompletableFuture<String> admittedAsync(String sessionId, String requestBody,
+            Function<LLMAdmissionController.Permit, CompletableFuture<String>> call) {
+        if (admissionController == null) {
+            return call.apply(null);
+        }
+
+        // 手动串联而非 thenCompose，以便取消时能同时取消排队中的许可与进行中的上游调用
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<LLMAdmissionController.Permit> acquired =
+                admissionController.acquire(model, sessionId, TokenEstimator.estimate(requestBody));
+        LLMFutures.cancelUpstreamOnCancel(result, acquired);
+        acquired.whenComplete((permit, acquireError) -> {
+            if (acquireError != null) {
+                result.completeExceptionally(unwrap(acquireError));
+                return;
+            }
+            if (result.isDone()) {
+                permit.release(new CancellationException());
+                return;
+            }
+            CompletableFuture<String> upstream;
+            try {
+                upstream = call.apply(permit);
+            } catch (RuntimeException e) {
+                upstream = CompletableFuture.failedFuture(e);
+            }
+            LLMFutures.cancelUpstreamOnCancel(result, upstream);
+            upstream.whenComplete((content, ex) -> {
+                Throwable cause = ex != null ? unwrap(ex) : null;
+                permit.release(cause);
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(content);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * 构建 java.net.http 请求
+     */
+    private HttpRequest buildHttpRequest(String requestBody) {
+        return HttpRequest.newBuilder()
                 .uri(URI.create(chatCompletionEndpoint))
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
                 .timeout(Duration.ofSeconds(apiTimeout))
-                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
+    }
 
+    /**
+     * 同步发送请求并提取回复内容
+     */
+    private String sendForContent(String requestBody) {
         try {
-            HttpResponse<String> resp = httpClient.send(req,
+            HttpResponse<String> resp = httpClient.send(buildHttpRequest(requestBody),
                     HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            if (resp.statusCode() != 200) {
-                throw new LLMClientException("LLM API 调用失败，状态码：" + resp.statusCode() + "，响应：" + resp.body());
-            }
-
-            // 解析返回
-            JSONObject jsonResp = new JSONObject(resp.body());
-            String content = jsonResp.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-
-            log.debug("LLM 返回的原始内容：{}", content);
+            return handleContentResponse(resp);
+        } catch (IOException e) {
+            throw new LLMClientException("调用 LLM API 异常：" + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LLMClientException("调用 LLM API 被中断", e);
+        }
+    }
 
-            // 尝试解析 JSON 数组
-            return parseMemoriesFromContent(content);
+    /**
+     * 异步发送请求并提取回复内容
+     */
+    private CompletableFuture<String> sendForContentAsync(String requestBody) {
+        CompletableFuture<HttpResponse<String>> sent = httpClient.sendAsync(buildHttpRequest(requestBody),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        // 取消时中止 HTTP 请求
+        return LLMFutures.cancelUpstreamOnCancel(sent.handle((resp, ex) -> {
+            if (ex != null) {
+                Throwable cause = unwrap(ex);
+                throw new LLMClientException("调用 LLM API 异常：" + cause.getMessage(), cause);
+            }
+            return handleContentResponse(resp);
+        }), sent);
+    }
 
-        } catch (IOException | InterruptedException e) {
-            throw new LLMClientException("调用 LLM API 异常：" + e.getMessage(), e);
-        } catch (org.json.JSONException e) {
-            throw new JsonParseException("解析 LLM 响应 JSON 失败：" + e.getMessage(), e);
+    /**
+     * 校验响应状态并提取回复内容
+     */
+    private String handleContentResponse(HttpResponse<String> resp) {
+        if (resp.statusCode() != 200) {
+            throw new LLMClientException("LLM API 调用失败，状态码：" + resp.statusCode() + "，响应：" + resp.body(),
+                    resp.statusCode());
         }
+        String content = parseChatContent(resp.body());
+        log.debug("LLM 返回的原始内容：{}", content);
+        return content;
     }
 
     /**
@@ -210,6 +623,28 @@ public class LLMClient implements LLMClientInterface {
         throw new IllegalArgumentException("无法从 LLM 返回内容中解析出有效的 JSON");
     }
 
+    /**
+     * 从融合调用的回复中解析全局摘要，没有 summary 字段或解析失败时返回 null
+     */
+    private String parseSummaryFromContent(String content) {
+        if (content == null) {
+            return null;
+        }
+        String stripped = stripMarkdownCodeBlock(content.trim());
+        int objStartIdx = stripped.indexOf("{");
+        int objEndIdx = stripped.lastIndexOf("}");
+        if (objStartIdx < 0 || objEndIdx <= objStartIdx) {
+            return null;
+        }
+        try {
+            String summary = new JSONObject(stripped.substring(objStartIdx, objEndIdx + 1)).optString("summary", "");
+            return summary.isBlank() ? null : summary.trim();
+        } catch (Exception e) {
+            log.debug("解析全局摘要失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 从 JSONArray 中提取候选记忆
      */
@@ -317,50 +752,91 @@ public class LLMClient implements LLMClientInterface {
 
     /**
      * 通用的 API 调用方法
+     * 配置了对冲策略时改走异步路径（对冲需要同时挂起两路请求），同步等待结果
      */
     @Override
     public String chat(List<String> messages) {
         if (apiKey == null || apiKey.isEmpty()) {
             throw new LLMClientException("API 密钥未配置，无法调用 LLM");
         }
+        if (hedgingPolicy != null) {
+            return await(chatAsync(messages));
+        }
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost(chatCompletionEndpoint);
-            request.setHeader("Authorization", "Bearer " + apiKey);
+        String body = buildChatRequestBody(messages).toString();
+        return invoke(body, () -> executePooled(body), Function.identity());
+    }
 
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("model", model);
-            requestBody.addProperty("temperature", temperature);
-            requestBody.addProperty("max_tokens", maxTokens);
-
-            JsonArray messagesArray = new JsonArray();
-            for (String message : messages) {
-                JsonObject msgObj = new JsonObject();
-                msgObj.addProperty("role", "user");
-                msgObj.addProperty("content", message);
-                messagesArray.add(msgObj);
-            }
-            requestBody.add("messages", messagesArray);
+    /**
+     * 异步对话调用，基于 HttpClient.sendAsync，等待响应期间不占用调用线程
+     */
+    @Override
+    public CompletableFuture<String> chatAsync(List<String> messages) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return CompletableFuture.failedFuture(new LLMClientException("API 密钥未配置，无法调用 LLM"));
+        }
 
-            request.setEntity(new StringEntity(requestBody.toString(), ContentType.APPLICATION_JSON));
+        String body = buildChatRequestBody(messages).toString();
+        return invokeAsync(body, () -> sendForContentAsync(body), Function.identity(), true);
+    }
 
-            return httpClient.execute(request, response -> {
-                String result = new String(response.getEntity().getContent().readAllBytes());
-                try {
-                    JsonObject jsonResponse = gson.fromJson(result, JsonObject.class);
-                    return jsonResponse.getAsJsonArray("choices")
-                            .get(0).getAsJsonObject()
-                            .getAsJsonObject("message")
-                            .get("content").getAsString();
-                } catch (com.google.gson.JsonSyntaxException e) {
-                    throw new JsonParseException("解析 API 响应失败：" + e.getMessage(), e);
+    /**
+     * 通过连接池同步发送对话请求
+     */
+    private String executePooled(String requestBody) {
+        try {
+            HttpPost request = new HttpPost(chatCompletionEndpoint);
+            request.setHeader("Authorization", "Bearer " + apiKey);
+            request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+
+            return pooledHttpClient.execute(request, response -> {
+                String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                if (response.getCode() != 200) {
+                    throw new LLMClientException("LLM API 调用失败，状态码：" + response.getCode() + "，响应：" + result,
+                            response.getCode());
                 }
+                return parseChatContent(result);
             });
         } catch (IOException e) {
             throw new LLMClientException("LLM API 调用失败：" + e.getMessage(), e);
         }
     }
 
+    /**
+     * 构建对话请求体
+     */
+    private JsonObject buildChatRequestBody(List<String> messages) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", model);
+        requestBody.addProperty("temperature", temperature);
+        requestBody.addProperty("max_tokens", maxTokens);
+
+        JsonArray messagesArray = new JsonArray();
+        for (String message : messages) {
+            JsonObject msgObj = new JsonObject();
+            msgObj.addProperty("role", "user");
+            msgObj.addProperty("content", message);
+            messagesArray.add(msgObj);
+        }
+        requestBody.add("messages", messagesArray);
+        return requestBody;
+    }
+
+    /**
+     * 从对话响应中提取回复内容
+     */
+    private String parseChatContent(String result) {
+        try {
+            JsonObject jsonResponse = gson.fromJson(result, JsonObject.class);
+            return jsonResponse.getAsJsonArray("choices")
+                    .get(0).getAsJsonObject()
+                    .getAsJsonObject("message")
+                    .get("content").getAsString();
+        } catch (RuntimeException e) {
+            throw new JsonParseException("解析 API 响应失败：" + e.getMessage(), e);
+        }
+    }
+
     /**
      * 根据用户消息获取 AI 响应
      */
@@ -371,6 +847,184 @@ public class LLMClient implements LLMClientInterface {
         return chat(messages);
     }
 
+    /**
+     * 异步根据用户消息获取 AI 响应
+     */
+    @Override
+    public CompletableFuture<String> generateResponseAsync(String userMessage) {
+        List<String> messages = new ArrayList<>();
+        messages.add(userMessage);
+        return chatAsync(messages);
+    }
+
+    /**
+     * 流式对话调用（stream: true）
+     * 按 SSE 逐行解析增量内容，每收到一段 delta 即回调 onDelta，
+     * 返回的 Future 在流结束后以完整回复完成
+     * 尚未输出任何内容时的暂时性失败可按重试策略重试，已输出内容后失败不再重试
+     */
+    @Override
+    public CompletableFuture<String> chatStream(List<String> messages, Consumer<String> onDelta) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return CompletableFuture.failedFuture(new LLMClientException("API 密钥未配置，无法调用 LLM"));
+        }
+
+        JsonObject requestBody = buildChatRequestBody(messages);
+        requestBody.addProperty("stream", true);
+        return streamCompletion(requestBody.toString(), onDelta);
+    }
+
+    /**
+     * 发起一次流式调用（请求体已包含 stream: true）
+     * 每次尝试都经过熔断器、舱壁与准入控制；尚未输出任何内容时的暂时性失败可按重试策略重试
+     */
+    private CompletableFuture<String> streamCompletion(String requestBody, Consumer<String> onDelta) {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(chatCompletionEndpoint))
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(apiTimeout))
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .build();
+
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        Consumer<String> trackingOnDelta = delta -> {
+            emitted.set(true);
+            if (onDelta != null) {
+                onDelta.accept(delta);
+            }
+        };
+        // 非 200 响应按普通文本读取，用于错误信息
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(new StreamDeltaSubscriber(trackingOnDelta),
+                        StreamDeltaSubscriber::getContent, StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+
+        String sessionId = LLMCallContext.currentSession();
+        // 准入控制按首字节延迟（收到响应头）调整并发上限，不计入流式输出本身的时长
+        return retriedAsync(() -> guardedAsync(() -> admittedAsync(sessionId, requestBody, permit -> {
+            CompletableFuture<HttpResponse<String>> sent = httpClient.sendAsync(req, info -> {
+                if (permit != null) {
+                    permit.markFirstByte();
+                }
+                return handler.apply(info);
+            });
+            return LLMFutures.cancelUpstreamOnCancel(sent.handle((resp, ex) -> {
+                if (ex != null) {
+                    Throwable cause = unwrap(ex);
+                    throw new LLMClientException("LLM 流式调用失败：" + cause.getMessage(), cause);
+                }
+                if (resp.statusCode() != 200) {
+                    throw new LLMClientException("LLM 流式调用失败，状态码：" + resp.statusCode()
+                            + "，响应：" + resp.body(), resp.statusCode());
+                }
+                return resp.body();
+            }), sent);
+        })), e -> !emitted.get());
+    }
+
+    /**
+     * SSE 增量解析器
+     * 逐行读取 "data: {...}" 事件，提取 choices[0].delta.content 并累积完整回复，
+     * 遇到 "data: [DONE]" 结束；无法解析的行（心跳、注释等）直接跳过
+     */
+    private static class StreamDeltaSubscriber implements Flow.Subscriber<String> {
+        private static final String DATA_PREFIX = "data:";
+        private static final String DONE_MARKER = "[DONE]";
+
+        private final Consumer<String> onDelta;
+        private final StringBuilder content = new StringBuilder();
+
+        StreamDeltaSubscriber(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line == null || !line.startsWith(DATA_PREFIX)) {
+                return;
+            }
+            String data = line.substring(DATA_PREFIX.length()).trim();
+            if (data.isEmpty() || DONE_MARKER.equals(data)) {
+                return;
+            }
+
+            String delta;
+            try {
+                JsonObject chunk = com.google.gson.JsonParser.parseString(data).getAsJsonObject();
+                JsonArray choices = chunk.getAsJsonArray("choices");
+                if (choices == null || choices.isEmpty()) {
+                    return;
+                }
+                JsonObject deltaObj = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+                if (deltaObj == null || !deltaObj.has("content") || deltaObj.get("content").isJsonNull()) {
+                    return;
+                }
+                delta = deltaObj.get("content").getAsString();
+            } catch (RuntimeException e) {
+                log.debug("跳过无法解析的流式数据：{}", data);
+                return;
+            }
+
+            if (delta.isEmpty()) {
+                return;
+            }
+            content.append(delta);
+            if (onDelta != null) {
+                try {
+                    onDelta.accept(delta);
+                } catch (RuntimeException e) {
+                    log.warn("流式回调处理失败：{}", e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warn("LLM 流式响应中断：{}", throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            log.debug("LLM 流式响应结束，长度：{}", content.length());
+        }
+
+        String getContent() {
+            return content.toString();
+        }
+    }
+
+    /**
+     * 同步等待 Future，按原始异常抛出
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new LLMClientException("LLM API 调用失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 展开 CompletableFuture 包装的异常
+     */
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
     /**
      * 尝试解析被截断的 JSON
      */
@@ -0,0 +1,310 @@
+package com.memosystem.adapter.llm;
+
+import com.memosystem.common.exception.LLMClientException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * LLM 客户端隔离：熔断器 + 舱壁
+ * 每个 LLM 客户端（对话、记忆提取、决策、全局记忆）各持有一个，互不影响，
+ * 某个模型变慢或故障时只会拖累使用它的角色
+ *
+ * 熔断器：
+ * - CLOSED：按最近 windowSize 次调用统计失败率（5xx、408、连接异常、超时计为失败），
+ *   调用数达到 minimumCalls 且失败率达到阈值时打开
+ * - OPEN：直接拒绝，不再等待上游超时；openDurationMillis 后进入半开
+ * - HALF_OPEN：放行最多 halfOpenProbes 个探测调用，全部成功则关闭，任一失败则重新打开
+ * 429 属于限流而非故障，由准入控制处理，不计入失败率
+ *
+ * 舱壁：限制单个客户端同时进行（含排队等待准入）的调用数，超出时快速失败
+ */
+@Slf4j
+public class LLMClientGuard {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final LLMConfig.LLMProperties.CircuitBreaker breakerConfig;
+    private final LLMConfig.LLMProperties.Bulkhead bulkheadConfig;
+    private final Semaphore bulkhead;
+
+    // 熔断器状态，由 this 加锁保护
+    private final boolean[] window;
+    private int windowCount;
+    private int windowNext;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private final LongAdder rejectedByBreaker = new LongAdder();
+    private final LongAdder rejectedByBulkhead = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    /**
+     * @param name           客户端角色名称（用于日志与统计）
+     * @param breakerConfig  熔断配置，enabled 为 false 时不熔断
+     * @param bulkheadConfig 舱壁配置，enabled 为 false 时不限制并发
+     */
+    public LLMClientGuard(String name, LLMConfig.LLMProperties.CircuitBreaker breakerConfig,
+            LLMConfig.LLMProperties.Bulkhead bulkheadConfig) {
+        this.name = name;
+        this.breakerConfig = breakerConfig;
+        this.bulkheadConfig = bulkheadConfig;
+        this.bulkhead = Boolean.TRUE.equals(bulkheadConfig.getEnabled())
+                ? new Semaphore(bulkheadConfig.getMaxConcurrentCalls())
+                : null;
+        this.window = new boolean[Math.max(1, breakerConfig.getWindowSize())];
+    }
+
+    /**
+     * 同步执行一次调用，舱壁已满时最多等待 maxWaitMillis
+     *
+     * @param call 单次上游调用
+     * @return 调用结果
+     */
+    public String execute(Supplier<String> call) {
+        Permit permit = acquire(true);
+        try {
+            String content = call.get();
+            permit.release(null);
+            return content;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 异步执行一次调用，舱壁已满时立即失败（不阻塞调用线程）
+     *
+     * @param call 单次上游调用
+     * @return 调用结果的 Future
+     */
+    public CompletableFuture<String> executeAsync(Supplier<CompletableFuture<String>> call) {
+        Permit permit;
+        try {
+            permit = acquire(false);
+        } catch (LLMClientException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<String> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        // 不直接返回 upstream.whenComplete：返回的 Future 先被取消时其回调不再执行，名额将无法归还
+        CompletableFuture<String> result = new CompletableFuture<>();
+        LLMFutures.cancelUpstreamOnCancel(result, upstream);
+        upstream.whenComplete((content, ex) -> {
+            Throwable cause = ex != null ? unwrap(ex) : null;
+            permit.release(cause);
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(content);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 熔断器是否处于打开状态
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    /**
+     * 获取隔离统计信息
+     */
+    public String getStatistics() {
+        String breaker;
+        synchronized (this) {
+            breaker = String.format("熔断器 %s（最近 %d 次调用失败 %d）", state, windowCount, windowFailures);
+        }
+        String bulkheadInfo = bulkhead != null
+                ? String.format("舱壁 %d/%d", bulkheadConfig.getMaxConcurrentCalls() - bulkhead.availablePermits(),
+                        bulkheadConfig.getMaxConcurrentCalls())
+                : "舱壁 关闭";
+        return String.format("%s: %s, %s, 熔断次数 %d, 熔断拒绝 %d, 舱壁拒绝 %d",
+                name, breaker, bulkheadInfo, opened.sum(), rejectedByBreaker.sum(), rejectedByBulkhead.sum());
+    }
+
+    private Permit acquire(boolean wait) {
+        boolean probe = admitByBreaker();
+
+        if (bulkhead != null && !tryEnterBulkhead(wait)) {
+            if (probe) {
+                releaseProbe();
+            }
+            rejectedByBulkhead.increment();
+            throw new LLMClientException("LLM 客户端 " + name + " 并发调用已达上限（"
+                    + bulkheadConfig.getMaxConcurrentCalls() + "），请求被拒绝");
+        }
+        return new Permit(probe);
+    }
+
+    private boolean tryEnterBulkhead(boolean wait) {
+        if (!wait || bulkheadConfig.getMaxWaitMillis() <= 0) {
+            return bulkhead.tryAcquire();
+        }
+        try {
+            return bulkhead.tryAcquire(bulkheadConfig.getMaxWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LLMClientException("等待 LLM 客户端 " + name + " 的并发名额被中断", e);
+        }
+    }
+
+    /**
+     * 熔断器准入判断
+     *
+     * @return 本次调用是否为半开状态下的探测调用
+     */
+    private synchronized boolean admitByBreaker() {
+        if (!Boolean.TRUE.equals(breakerConfig.getEnabled())) {
+            return false;
+        }
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < breakerConfig.getOpenDurationMillis()) {
+                rejectedByBreaker.increment();
+                throw new LLMClientException("LLM 客户端 " + name + " 已熔断，暂停调用上游");
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            log.info("LLM 客户端 {} 熔断器进入半开状态，开始探测", name);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= breakerConfig.getHalfOpenProbes()) {
+                rejectedByBreaker.increment();
+                throw new LLMClientException("LLM 客户端 " + name + " 熔断器半开，探测调用已满");
+            }
+            probesInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void releaseProbe() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    /**
+     * 记录一次调用结果，更新熔断器状态
+     */
+    private synchronized void onComplete(boolean probe, boolean failed) {
+        if (!Boolean.TRUE.equals(breakerConfig.getEnabled())) {
+            return;
+        }
+        if (probe) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            // 探测调用可能跨越了一次"打开 -> 半开"，计数不低于 0
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (failed) {
+                open("探测调用失败");
+            } else if (++probeSuccesses >= breakerConfig.getHalfOpenProbes()) {
+                close();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (windowCount == window.length && window[windowNext]) {
+            windowFailures--;
+        }
+        window[windowNext] = failed;
+        windowNext = (windowNext + 1) % window.length;
+        windowCount = Math.min(windowCount + 1, window.length);
+        if (failed) {
+            windowFailures++;
+        }
+
+        if (windowCount >= breakerConfig.getMinimumCalls()
+                && (double) windowFailures / windowCount >= breakerConfig.getFailureRateThreshold()) {
+            open(String.format("最近 %d 次调用失败 %d 次", windowCount, windowFailures));
+        }
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        opened.increment();
+        log.warn("LLM 客户端 {} 熔断器打开（{}），{} ms 内直接拒绝调用", name, reason, breakerConfig.getOpenDurationMillis());
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowCount = 0;
+        windowNext = 0;
+        windowFailures = 0;
+        log.info("LLM 客户端 {} 熔断器关闭，恢复正常调用", name);
+    }
+
+    /**
+     * 是否计为熔断失败：上游故障（5xx、408、连接异常、超时）计入，429 与请求本身的错误不计入
+     */
+    private static boolean isFailure(Throwable error) {
+        if (error == null) {
+            return false;
+        }
+        if (error instanceof LLMClientException e && e.isRateLimited()) {
+            return false;
+        }
+        return LLMRetryPolicy.isRetryable(error);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    /**
+     * 一次调用占用的熔断探测名额与舱壁名额
+     */
+    private final class Permit {
+        private final boolean probe;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        private void release(Throwable error) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            if (error instanceof CancellationException) {
+                // 调用被取消（如对冲落败），只归还名额，不计入熔断统计
+                if (probe) {
+                    releaseProbe();
+                }
+                return;
+            }
+            onComplete(probe, isFailure(error));
+        }
+    }
+}
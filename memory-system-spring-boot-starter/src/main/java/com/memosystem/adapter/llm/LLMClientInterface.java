@@ -3,12 +3,15 @@ package com.memosystem.adapter.llm;
 import com.memosystem.core.memory.CandidateMemory;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * LLM 客户端接口
  * 定义与大语言模型交互的标准接口
  * 
  * 使用方可以实现此接口来支持不同的 LLM 提供商
+ * 异步方法的默认实现只是把同步调用放到公共线程池执行，建议实现方基于非阻塞 IO 覆盖
  */
 public interface LLMClientInterface {
 
@@ -38,4 +41,65 @@ public interface LLMClientInterface {
      * @throws RuntimeException 如果提取失败
      */
     List<CandidateMemory> formCandidateMemories(String prompt);
+
+    /**
+     * 异步调用 LLM 进行对话
+     * 
+     * @param messages 消息列表（交替的 user/assistant 消息）
+     * @return LLM 回复内容的 Future，调用失败时以异常完成
+     */
+    default CompletableFuture<String> chatAsync(List<String> messages) {
+        return CompletableFuture.supplyAsync(() -> chat(messages));
+    }
+
+    /**
+     * 异步根据用户消息生成 AI 响应
+     * 
+     * @param userMessage 用户消息
+     * @return AI 响应的 Future，调用失败时以异常完成
+     */
+    default CompletableFuture<String> generateResponseAsync(String userMessage) {
+        return CompletableFuture.supplyAsync(() -> generateResponse(userMessage));
+    }
+
+    /**
+     * 异步从提示词中提取候选记忆
+     * 
+     * @param prompt 提示词
+     * @return 候选记忆列表的 Future，提取失败时以异常完成
+     */
+    default CompletableFuture<List<CandidateMemory>> formCandidateMemoriesAsync(String prompt) {
+        return CompletableFuture.supplyAsync(() -> formCandidateMemories(prompt));
+    }
+
+    /**
+     * 流式从提示词中提取候选记忆，每解析出一条即回调 onCandidate
+     * 默认实现不支持增量解析，拿到完整结果后逐条回调
+     * 
+     * @param prompt      提示词
+     * @param onCandidate 每得到一条候选记忆时的回调
+     * @return 全部候选记忆的 Future，提取失败时以异常完成（失败前已回调的候选记忆仍然有效）
+     */
+    default CompletableFuture<List<CandidateMemory>> formCandidateMemoriesStream(String prompt,
+            Consumer<CandidateMemory> onCandidate) {
+        return formCandidateMemoriesAsync(prompt).thenApply(memories -> {
+            memories.forEach(onCandidate);
+            return memories;
+        });
+    }
+
+    /**
+     * 流式调用 LLM 进行对话
+     * 默认实现不支持增量输出，拿到完整回复后一次性回调
+     * 
+     * @param messages 消息列表（交替的 user/assistant 消息）
+     * @param onDelta  每收到一段增量内容时的回调
+     * @return 流结束后以完整回复完成的 Future，调用失败时以异常完成
+     */
+    default CompletableFuture<String> chatStream(List<String> messages, Consumer<String> onDelta) {
+        return chatAsync(messages).thenApply(content -> {
+            onDelta.accept(content);
+            return content;
+        });
+    }
 }
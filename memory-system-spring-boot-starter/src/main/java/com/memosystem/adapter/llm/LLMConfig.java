@@ -8,6 +8,9 @@ import org.springframework.context.annotation.Primary;
 import lombok.Data;
 import lombok.Getter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * LLM 统一配置类
  * 集中管理所有 LLM 相关的配置信息和 Bean 定义
@@ -42,6 +45,109 @@ public class LLMConfig {
         private Double memoryExtractionTemperature = 0.0;
         private Double decisionTemperature = 0.0;
         private Integer maxTokens = 2000;
+        private Pool pool = new Pool();
+        private ResponseCache responseCache = new ResponseCache();
+        private RateLimit rateLimit = new RateLimit();
+        private Retry retry = new Retry();
+        private Hedging hedging = new Hedging();
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+        private Bulkhead bulkhead = new Bulkhead();
+
+        /**
+         * HTTP 连接池配置（每个 LLMClient 独享一个连接池）
+         */
+        @Data
+        public static class Pool {
+            private Integer maxConnectionsPerRoute = 20;
+            private Integer maxConnectionsTotal = 50;
+            private Integer keepAliveSeconds = 60;
+            private Integer idleEvictSeconds = 30;
+        }
+
+        /**
+         * 确定性调用（temperature=0）的响应缓存配置，所有客户端共享一个缓存
+         */
+        @Data
+        public static class ResponseCache {
+            private Boolean enabled = true;
+            private Long maxEntries = 10_000L;
+            private Long ttlMinutes = 1440L;
+            private Boolean diskEnabled = false;
+            private String diskDir = "./data/llm-cache";
+        }
+
+        /**
+         * 按模型的准入控制配置：令牌桶限流、AIMD 自适应并发与按会话公平排队
+         */
+        @Data
+        public static class RateLimit {
+            private Boolean enabled = true;
+            private Integer requestsPerMinute = 600;
+            private Integer tokensPerMinute = 1_000_000;
+            private Integer initialConcurrency = 8;
+            private Integer minConcurrency = 1;
+            private Integer maxConcurrency = 32;
+            private Long latencyTargetMillis = 15_000L;
+            private Integer maxQueuedRequests = 1000;
+            private Map<String, ModelLimit> models = new HashMap<>();
+
+            /**
+             * 单个模型的配额覆盖，未设置的项使用全局值
+             */
+            @Data
+            public static class ModelLimit {
+                private Integer requestsPerMinute;
+                private Integer tokensPerMinute;
+            }
+        }
+
+        /**
+         * 暂时性失败（408/429/5xx、连接异常、超时）的重试配置：指数退避 + 全抖动
+         */
+        @Data
+        public static class Retry {
+            private Boolean enabled = true;
+            private Integer maxAttempts = 3;
+            private Long initialBackoffMillis = 500L;
+            private Long maxBackoffMillis = 8_000L;
+            private Double multiplier = 2.0;
+        }
+
+        /**
+         * 对话调用的对冲请求配置（仅默认客户端）：超过最近耗时的分位数仍未返回时再发一路请求
+         */
+        @Data
+        public static class Hedging {
+            private Boolean enabled = false;
+            private Double percentile = 0.95;
+            private Integer minSamples = 20;
+            private Integer windowSize = 200;
+            private Long minDelayMillis = 1_000L;
+            private Double maxHedgeRatio = 0.1;
+        }
+
+        /**
+         * 熔断器配置（每个客户端独立）：失败率达到阈值后快速失败，到期后半开探测
+         */
+        @Data
+        public static class CircuitBreaker {
+            private Boolean enabled = true;
+            private Double failureRateThreshold = 0.5;
+            private Integer windowSize = 20;
+            private Integer minimumCalls = 10;
+            private Long openDurationMillis = 30_000L;
+            private Integer halfOpenProbes = 3;
+        }
+
+        /**
+         * 舱壁配置（每个客户端独立）：限制单个客户端同时进行的调用数
+         */
+        @Data
+        public static class Bulkhead {
+            private Boolean enabled = true;
+            private Integer maxConcurrentCalls = 32;
+            private Long maxWaitMillis = 500L;
+        }
     }
 
     // ============ 实例方法 ============
@@ -102,8 +208,115 @@ public class LLMConfig {
         return llmProperties.getMaxTokens();
     }
 
+    public LLMProperties.Pool getPool() {
+        return llmProperties.getPool();
+    }
+
+    public LLMProperties.RateLimit getRateLimitConfig() {
+        return llmProperties.getRateLimit();
+    }
+
+    public LLMProperties.ResponseCache getResponseCacheConfig() {
+        return llmProperties.getResponseCache();
+    }
+
+    public LLMProperties.Retry getRetryConfig() {
+        return llmProperties.getRetry();
+    }
+
+    public LLMProperties.Hedging getHedgingConfig() {
+        return llmProperties.getHedging();
+    }
+
+    public LLMProperties.CircuitBreaker getCircuitBreakerConfig() {
+        return llmProperties.getCircuitBreaker();
+    }
+
+    public LLMProperties.Bulkhead getBulkheadConfig() {
+        return llmProperties.getBulkhead();
+    }
+
     // ============ Spring Bean 配置 ============
 
+    // LLM 响应缓存 Bean（仅 temperature=0 的客户端使用）
+    @Bean(name = "mem0LLMResponseCache")
+    public LLMResponseCache llmResponseCache() {
+        return new LLMResponseCache(getResponseCacheConfig());
+    }
+
+    // LLM 请求合并 Bean（所有客户端共享，相同请求并发时只调用一次上游）
+    @Bean(name = "mem0LLMRequestCoalescer")
+    public LLMRequestCoalescer llmRequestCoalescer() {
+        return new LLMRequestCoalescer();
+    }
+
+    // LLM 准入控制 Bean（所有客户端共享，按模型限流）
+    @Bean(name = "mem0LLMAdmissionController")
+    public LLMAdmissionController llmAdmissionController() {
+        return new LLMAdmissionController(getRateLimitConfig());
+    }
+
+    // LLM 重试策略 Bean（所有客户端共享）
+    @Bean(name = "mem0LLMRetryPolicy")
+    public LLMRetryPolicy llmRetryPolicy() {
+        return new LLMRetryPolicy(getRetryConfig());
+    }
+
+    // LLM 对冲请求 Bean（仅默认客户端的对话调用使用）
+    @Bean(name = "mem0LLMHedgingPolicy")
+    public LLMHedgingPolicy llmHedgingPolicy() {
+        return new LLMHedgingPolicy(getHedgingConfig());
+    }
+
+    // 各 LLM 客户端独立的熔断器与舱壁 Bean，一个角色故障或变慢不会影响其他角色
+    @Bean(name = "mem0DefaultLLMClientGuard")
+    public LLMClientGuard defaultLLMClientGuard() {
+        return new LLMClientGuard("chat", getCircuitBreakerConfig(), getBulkheadConfig());
+    }
+
+    @Bean(name = "mem0MemoryExtractionClientGuard")
+    public LLMClientGuard memoryExtractionClientGuard() {
+        return new LLMClientGuard("memory-extraction", getCircuitBreakerConfig(), getBulkheadConfig());
+    }
+
+    @Bean(name = "mem0DecisionLLMClientGuard")
+    public LLMClientGuard decisionLLMClientGuard() {
+        return new LLMClientGuard("decision", getCircuitBreakerConfig(), getBulkheadConfig());
+    }
+
+    @Bean(name = "mem0GlobalMemoryLLMClientGuard")
+    public LLMClientGuard globalMemoryLLMClientGuard() {
+        return new LLMClientGuard("global-memory", getCircuitBreakerConfig(), getBulkheadConfig());
+    }
+
+    /**
+     * 重试未启用时返回 null
+     */
+    private LLMRetryPolicy retryPolicyIfEnabled() {
+        return Boolean.TRUE.equals(getRetryConfig().getEnabled()) ? llmRetryPolicy() : null;
+    }
+
+    /**
+     * 对冲请求未启用时返回 null
+     */
+    private LLMHedgingPolicy hedgingPolicyIfEnabled() {
+        return Boolean.TRUE.equals(getHedgingConfig().getEnabled()) ? llmHedgingPolicy() : null;
+    }
+
+    /**
+     * 准入控制未启用时返回 null
+     */
+    private LLMAdmissionController admissionControllerIfEnabled() {
+        return Boolean.TRUE.equals(getRateLimitConfig().getEnabled()) ? llmAdmissionController() : null;
+    }
+
+    /**
+     * 响应缓存未启用时返回 null
+     */
+    private LLMResponseCache responseCacheIfEnabled() {
+        return Boolean.TRUE.equals(getResponseCacheConfig().getEnabled()) ? llmResponseCache() : null;
+    }
+
     // 默认 LLM 客户端 Bean
     @Bean(name = "mem0DefaultLLMClient")
     @Primary
@@ -115,7 +328,14 @@ public class LLMConfig {
                 getConnectTimeout(),
                 getApiTimeout(),
                 getChatTemperature(),
-                getMaxTokens());
+                getMaxTokens(),
+                getPool(),
+                responseCacheIfEnabled(),
+                llmRequestCoalescer(),
+                admissionControllerIfEnabled(),
+                retryPolicyIfEnabled(),
+                hedgingPolicyIfEnabled(),
+                defaultLLMClientGuard());
     }
 
     // 专用 LLM 客户端 Bean - 记忆提取
@@ -128,7 +348,14 @@ public class LLMConfig {
                 getConnectTimeout(),
                 getApiTimeout(),
                 getMemoryExtractionTemperature(),
-                getMaxTokens());
+                getMaxTokens(),
+                getPool(),
+                responseCacheIfEnabled(),
+                llmRequestCoalescer(),
+                admissionControllerIfEnabled(),
+                retryPolicyIfEnabled(),
+                null,
+                memoryExtractionClientGuard());
     }
 
     // 专用 LLM 客户端 Bean - 决策制定
@@ -141,7 +368,14 @@ public class LLMConfig {
                 getConnectTimeout(),
                 getApiTimeout(),
                 getDecisionTemperature(),
-                getMaxTokens());
+                getMaxTokens(),
+                getPool(),
+                responseCacheIfEnabled(),
+                llmRequestCoalescer(),
+                admissionControllerIfEnabled(),
+                retryPolicyIfEnabled(),
+                null,
+                decisionLLMClientGuard());
     }
 
     // 专用 LLM 客户端 Bean - 全局记忆
@@ -154,6 +388,13 @@ public class LLMConfig {
                 getConnectTimeout(),
                 getApiTimeout(),
                 getChatTemperature(),
-                getMaxTokens());
+                getMaxTokens(),
+                getPool(),
+                responseCacheIfEnabled(),
+                llmRequestCoalescer(),
+                admissionControllerIfEnabled(),
+                retryPolicyIfEnabled(),
+                null,
+                globalMemoryLLMClientGuard());
     }
 }
\ No newline at end of file
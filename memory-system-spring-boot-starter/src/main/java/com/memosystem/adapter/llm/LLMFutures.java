@@ -0,0 +1,31 @@
+package com.memosystem.adapter.llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * LLM 异步调用链的 Future 工具方法
+ */
+final class LLMFutures {
+
+    private LLMFutures() {
+    }
+
+    /**
+     * 下游被取消时一并取消上游
+     * CompletableFuture 的取消不会沿依赖链向上传递，调用链每一层都需要显式转发，
+     * 这样对冲落败的一路被取消后，HTTP 请求会被中止，各层占用的许可随之释放
+     *
+     * @param downstream 返回给调用方的 Future
+     * @param upstream   downstream 所依赖的上游 Future
+     * @return downstream
+     */
+    static <T> CompletableFuture<T> cancelUpstreamOnCancel(CompletableFuture<T> downstream, Future<?> upstream) {
+        downstream.whenComplete((value, ex) -> {
+            if (downstream.isCancelled()) {
+                upstream.cancel(true);
+            }
+        });
+        return downstream;
+    }
+}
@@ -0,0 +1,168 @@
+package com.memosystem.adapter.llm;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * LLM 对冲请求（hedged request）
+ * 按模型记录最近成功调用的耗时，第一次调用超过该耗时的指定分位数（默认 p95）仍未返回时，
+ * 再发起一次相同的调用，取先成功的结果；结果确定后取消仍在进行的另一路，
+ * 使其中止 HTTP 请求并释放准入、舱壁等许可
+ *
+ * 只有落在长尾的调用才会触发对冲，中位数附近的调用不会产生额外请求；
+ * 另外对冲请求占总请求的比例不超过 maxHedgeRatio，避免上游整体变慢时放大负载。
+ * 样本数不足 minSamples 时不对冲
+ */
+@Slf4j
+public class LLMHedgingPolicy {
+
+    private final LLMConfig.LLMProperties.Hedging config;
+    private final Map<String, ModelStats> statsByModel = new ConcurrentHashMap<>();
+
+    public LLMHedgingPolicy(LLMConfig.LLMProperties.Hedging config) {
+        this.config = config;
+    }
+
+    /**
+     * 执行一次可对冲的调用
+     *
+     * @param model 模型名称（按模型统计耗时）
+     * @param call  单路调用，对冲时会被再调用一次
+     * @return 先成功的一路结果；两路都失败时以最后一个异常完成
+     */
+    public CompletableFuture<String> executeAsync(String model, Supplier<CompletableFuture<String>> call) {
+        ModelStats stats = statsFor(model);
+        stats.requests.increment();
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        List<CompletableFuture<String>> legs = new CopyOnWriteArrayList<>();
+        // 结果确定（或调用方取消）后取消其余各路，已完成的一路不受影响
+        result.whenComplete((content, ex) -> legs.forEach(leg -> leg.cancel(true)));
+        launch(stats, call, result, outstanding, legs, false);
+
+        long delayMillis = stats.hedgeDelayMillis();
+        if (delayMillis >= 0) {
+            CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                if (result.isDone() || !stats.tryAcquireHedge()) {
+                    return;
+                }
+                outstanding.incrementAndGet();
+                log.debug("LLM 调用超过 {} ms 未返回，发起对冲请求，模型：{}", delayMillis, model);
+                launch(stats, call, result, outstanding, legs, true);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 获取对冲统计信息（按模型分组）
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        statsByModel.forEach((model, stats) -> {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            long delay = stats.hedgeDelayMillis();
+            sb.append(String.format("%s: 请求 %d, 对冲 %d, 对冲胜出 %d, 对冲延迟 %s",
+                    model, stats.requests.sum(), stats.hedged.sum(), stats.hedgeWins.sum(),
+                    delay >= 0 ? delay + " ms" : "样本不足"));
+        });
+        return sb.length() == 0 ? "暂无调用" : sb.toString();
+    }
+
+    private void launch(ModelStats stats, Supplier<CompletableFuture<String>> call,
+            CompletableFuture<String> result, AtomicInteger outstanding, List<CompletableFuture<String>> legs,
+            boolean hedge) {
+        long start = System.nanoTime();
+        CompletableFuture<String> leg;
+        try {
+            leg = call.get();
+        } catch (RuntimeException e) {
+            leg = CompletableFuture.failedFuture(e);
+        }
+        legs.add(leg);
+        if (result.isDone()) {
+            // 发起期间结果已确定
+            leg.cancel(true);
+        }
+
+        leg.whenComplete((content, ex) -> {
+            if (ex == null) {
+                stats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                if (result.complete(content) && hedge) {
+                    stats.hedgeWins.increment();
+                }
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(ex));
+            }
+        });
+    }
+
+    private ModelStats statsFor(String model) {
+        return statsByModel.computeIfAbsent(model != null ? model : "unknown", m -> new ModelStats());
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    /**
+     * 单个模型的耗时窗口与对冲统计
+     */
+    private class ModelStats {
+        private final long[] window = new long[Math.max(1, config.getWindowSize())];
+        private int size;
+        private int next;
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hedged = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+
+        private synchronized void record(long latencyMillis) {
+            window[next] = latencyMillis;
+            next = (next + 1) % window.length;
+            size = Math.min(size + 1, window.length);
+        }
+
+        /**
+         * 对冲延迟：最近成功调用耗时的分位数，不低于 minDelayMillis；样本不足时返回 -1
+         */
+        private synchronized long hedgeDelayMillis() {
+            if (size < config.getMinSamples()) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(window, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(config.getPercentile() * size) - 1;
+            long percentile = sorted[Math.max(0, Math.min(size - 1, index))];
+            return Math.max(config.getMinDelayMillis(), percentile);
+        }
+
+        /**
+         * 在对冲预算内占用一次对冲名额
+         */
+        private synchronized boolean tryAcquireHedge() {
+            if (hedged.sum() + 1 > config.getMaxHedgeRatio() * requests.sum()) {
+                return false;
+            }
+            hedged.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.memosystem.adapter.llm;
+
+import com.memosystem.common.exception.LLMClientException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * LLM 请求合并（single-flight）
+ * 请求指纹相同的并发调用共享同一次上游调用及其结果：
+ * 第一个调用方发起请求，调用进行期间到达的相同请求直接等待该结果，调用结束后立即移除，
+ * 不会缓存结果（结果缓存见 LLMResponseCache）
+ *
+ * 按模型统计上游调用次数与被合并（去重）的请求数
+ */
+@Slf4j
+public class LLMRequestCoalescer {
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, ModelStats> statsByModel = new ConcurrentHashMap<>();
+
+    /**
+     * 同步执行，相同指纹的调用进行中时等待其结果
+     *
+     * @param model 模型名称（用于分模型统计）
+     * @param key   请求指纹
+     * @param call  实际的上游调用
+     * @return 回复内容
+     */
+    public String execute(String model, String key, Supplier<String> call) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            statsFor(model).suppressed.increment();
+            log.debug("合并进行中的相同 LLM 请求，模型：{}", model);
+            return await(existing);
+        }
+
+        statsFor(model).upstream.increment();
+        try {
+            String content = call.get();
+            mine.complete(content);
+            return content;
+        } catch (Throwable e) {
+            // Error 同样要完成共享的 Future，否则已在等待的调用方会永久阻塞
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 异步执行，相同指纹的调用进行中时共享其 Future
+     * 返回的是共享 Future 的副本，调用方取消不会影响其他等待者
+     *
+     * @param model 模型名称（用于分模型统计）
+     * @param key   请求指纹
+     * @param call  实际的上游调用
+     * @return 回复内容的 Future
+     */
+    public CompletableFuture<String> executeAsync(String model, String key, Supplier<CompletableFuture<String>> call) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            statsFor(model).suppressed.increment();
+            log.debug("合并进行中的相同 LLM 请求，模型：{}", model);
+            return existing.copy();
+        }
+
+        statsFor(model).upstream.increment();
+        CompletableFuture<String> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        } catch (Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+
+        upstream.whenComplete((content, ex) -> {
+            inFlight.remove(key, mine);
+            if (ex != null) {
+                mine.completeExceptionally(unwrap(ex));
+            } else {
+                mine.complete(content);
+            }
+        });
+        return mine.copy();
+    }
+
+    /**
+     * 当前进行中的上游调用数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 获取合并统计信息（按模型分组）
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("进行中: %d", inFlight.size()));
+        statsByModel.forEach((model, stats) -> {
+            long upstream = stats.upstream.sum();
+            long suppressed = stats.suppressed.sum();
+            long total = upstream + suppressed;
+            sb.append(String.format("; %s: 上游调用 %d, 合并去重 %d, 去重率 %.2f%%",
+                    model, upstream, suppressed, total == 0 ? 0.0 : suppressed * 100.0 / total));
+        });
+        return sb.toString();
+    }
+
+    private ModelStats statsFor(String model) {
+        return statsByModel.computeIfAbsent(model != null ? model : "unknown", m -> new ModelStats());
+    }
+
+    /**
+     * 等待共享调用的结果，按原始异常抛出
+     */
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new LLMClientException("LLM API 调用失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    /**
+     * 单个模型的合并统计
+     */
+    private static class ModelStats {
+        private final LongAdder upstream = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+    }
+}
@@ -0,0 +1,217 @@
+package com.memosystem.adapter.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.Gson;
+import com.memosystem.common.model.CommonFileRepository;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM 响应缓存
+ * 仅用于 temperature=0 的确定性调用：相同请求体（模型 + 参数 + 提示词）的回答相同，
+ * 以请求体的 SHA-256 作为键，重试、重放与重复事实无需再次调用 LLM
+ *
+ * 两级存储：
+ * - 内存层：容量有上限（W-TinyLFU），写入后按 TTL 过期
+ * - 磁盘层（可选）：每个键一个文件，进程重启后仍可命中，读取时校验 TTL
+ */
+@Slf4j
+public class LLMResponseCache {
+
+    private static final Gson GSON = new Gson();
+
+    private final Cache<String, String> memoryTier;
+    private final Path diskDir;
+    private final Duration ttl;
+    private final Map<String, ModelStats> statsByModel = new ConcurrentHashMap<>();
+
+    public LLMResponseCache(LLMConfig.LLMProperties.ResponseCache config) {
+        this.ttl = Duration.ofMinutes(config.getTtlMinutes());
+        this.memoryTier = Caffeine.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .expireAfterWrite(ttl)
+                .build();
+        this.diskDir = Boolean.TRUE.equals(config.getDiskEnabled()) ? Paths.get(config.getDiskDir()) : null;
+        log.info("LLM 响应缓存初始化完成：最大条目={}, TTL={} 分钟, 磁盘层={}",
+                config.getMaxEntries(), config.getTtlMinutes(), diskDir != null ? diskDir : "关闭");
+    }
+
+    /**
+     * 计算请求指纹（请求体的 SHA-256）
+     */
+    public static String fingerprint(String requestBody) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(requestBody.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 SHA-256", e);
+        }
+    }
+
+    /**
+     * 查询缓存，先查内存层再查磁盘层，磁盘命中时回填内存层
+     *
+     * @param model 模型名称（用于分模型统计）
+     * @param key   请求指纹
+     * @return 缓存的回复内容，未命中返回 null
+     */
+    public String get(String model, String key) {
+        ModelStats stats = statsFor(model);
+
+        String content = memoryTier.getIfPresent(key);
+        if (content != null) {
+            stats.memoryHits.increment();
+            return content;
+        }
+
+        content = readFromDisk(key);
+        if (content != null) {
+            memoryTier.put(key, content);
+            stats.diskHits.increment();
+            return content;
+        }
+
+        stats.misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param model   模型名称
+     * @param key     请求指纹
+     * @param content 回复内容
+     */
+    public void put(String model, String key, String content) {
+        if (content == null) {
+            return;
+        }
+        memoryTier.put(key, content);
+        writeToDisk(model, key, content);
+    }
+
+    /**
+     * 总命中率（内存层 + 磁盘层）
+     */
+    public double hitRate() {
+        long hits = 0;
+        long total = 0;
+        for (ModelStats stats : statsByModel.values()) {
+            hits += stats.hits();
+            total += stats.hits() + stats.misses.sum();
+        }
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 获取缓存统计信息（按模型分组）
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("条目数: %d, 总命中率: %.2f%%", memoryTier.estimatedSize(), hitRate() * 100));
+        statsByModel.forEach((model, stats) -> {
+            long total = stats.hits() + stats.misses.sum();
+            sb.append(String.format("; %s: 内存命中 %d, 磁盘命中 %d, 未命中 %d, 命中率 %.2f%%",
+                    model,
+                    stats.memoryHits.sum(),
+                    stats.diskHits.sum(),
+                    stats.misses.sum(),
+                    total == 0 ? 0.0 : stats.hits() * 100.0 / total));
+        });
+        return sb.toString();
+    }
+
+    private ModelStats statsFor(String model) {
+        return statsByModel.computeIfAbsent(model != null ? model : "unknown", m -> new ModelStats());
+    }
+
+    /**
+     * 磁盘层文件路径，按指纹前两位分目录，避免单目录文件过多
+     */
+    private Path diskPath(String key) {
+        return diskDir.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    private String readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            DiskEntry entry = GSON.fromJson(reader, DiskEntry.class);
+            if (entry == null || entry.getContent() == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.getCreatedAt() > ttl.toMillis()) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            return entry.getContent();
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取 LLM 响应磁盘缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String model, String key, String content) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            CommonFileRepository.overwrite(diskPath(key).toString(),
+                    new DiskEntry(model, System.currentTimeMillis(), content));
+        } catch (RuntimeException e) {
+            log.warn("写入 LLM 响应磁盘缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 磁盘层条目
+     */
+    @Data
+    @NoArgsConstructor
+    private static class DiskEntry {
+        private String model;
+        private long createdAt;
+        private String content;
+
+        DiskEntry(String model, long createdAt, String content) {
+            this.model = model;
+            this.createdAt = createdAt;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 单个模型的命中统计
+     */
+    private static class ModelStats {
+        private final LongAdder memoryHits = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        long hits() {
+            return memoryHits.sum() + diskHits.sum();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.memosystem.adapter.llm;
+
+import com.memosystem.common.exception.LLMClientException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * LLM 调用重试策略
+ * 仅重试暂时性失败：HTTP 408/429/5xx、连接异常与超时；
+ * 其他状态码（如 400/401）、响应解析失败、排队已满等直接抛出
+ *
+ * 退避采用指数退避 + 全抖动（full jitter）：第 n 次重试（n 从 0 计）前等待 [0, min(max, initial * multiplier^n)) 内的随机时长，
+ * 避免大量调用在同一时刻集中重试
+ */
+@Slf4j
+public class LLMRetryPolicy {
+
+    private final LLMConfig.LLMProperties.Retry config;
+    private final Map<String, ModelStats> statsByModel = new ConcurrentHashMap<>();
+
+    public LLMRetryPolicy(LLMConfig.LLMProperties.Retry config) {
+        this.config = config;
+    }
+
+    /**
+     * 同步执行，失败且可重试时退避后重新调用
+     *
+     * @param model 模型名称（用于分模型统计）
+     * @param call  单次调用
+     * @return 调用结果
+     */
+    public String execute(String model, Supplier<String> call) {
+        int attempt = 1;
+        while (true) {
+            try {
+                String content = call.get();
+                if (attempt > 1) {
+                    statsFor(model).recovered.increment();
+                }
+                return content;
+            } catch (RuntimeException e) {
+                if (!shouldRetry(model, attempt, e)) {
+                    throw e;
+                }
+                sleep(backoffMillis(attempt));
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * 异步执行，退避期间不占用线程
+     *
+     * @param model 模型名称（用于分模型统计）
+     * @param call  单次调用
+     * @return 调用结果的 Future
+     */
+    public CompletableFuture<String> executeAsync(String model, Supplier<CompletableFuture<String>> call) {
+        return executeAsync(model, call, e -> true);
+    }
+
+    /**
+     * 异步执行，retryAllowed 可进一步限制是否允许重试（如流式调用已输出内容后不可重试）
+     */
+    public CompletableFuture<String> executeAsync(String model, Supplier<CompletableFuture<String>> call,
+            Predicate<Throwable> retryAllowed) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        attemptAsync(model, call, retryAllowed, 1, result);
+        return result;
+    }
+
+    /**
+     * 是否为可重试的暂时性失败
+     */
+    public static boolean isRetryable(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (!(cause instanceof LLMClientException e)) {
+            return false;
+        }
+        int status = e.getStatusCode();
+        if (status != 0) {
+            return status == 408 || status == 429 || status >= 500;
+        }
+        // 没有状态码时，仅连接/超时等 IO 异常可重试
+        return e.getCause() instanceof IOException;
+    }
+
+    /**
+     * 获取重试统计信息（按模型分组）
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        statsByModel.forEach((model, stats) -> {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(String.format("%s: 重试 %d, 重试后成功 %d, 重试耗尽 %d",
+                    model, stats.retries.sum(), stats.recovered.sum(), stats.exhausted.sum()));
+        });
+        return sb.length() == 0 ? "暂无重试" : sb.toString();
+    }
+
+    private void attemptAsync(String model, Supplier<CompletableFuture<String>> call,
+            Predicate<Throwable> retryAllowed, int attempt, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            // 调用方已取消，不再发起新的尝试
+            return;
+        }
+        CompletableFuture<String> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        LLMFutures.cancelUpstreamOnCancel(result, upstream);
+
+        upstream.whenComplete((content, ex) -> {
+            if (ex == null) {
+                if (attempt > 1) {
+                    statsFor(model).recovered.increment();
+                }
+                result.complete(content);
+                return;
+            }
+            Throwable cause = unwrap(ex);
+            if (!retryAllowed.test(cause) || !shouldRetry(model, attempt, cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS)
+                    .execute(() -> attemptAsync(model, call, retryAllowed, attempt + 1, result));
+        });
+    }
+
+    /**
+     * 判断第 attempt 次调用失败后是否重试，并记录统计
+     */
+    private boolean shouldRetry(String model, int attempt, Throwable error) {
+        if (!isRetryable(error)) {
+            return false;
+        }
+        ModelStats stats = statsFor(model);
+        if (attempt >= config.getMaxAttempts()) {
+            stats.exhausted.increment();
+            log.warn("LLM 调用重试 {} 次后仍失败，模型：{}，原因：{}", attempt - 1, model, error.getMessage());
+            return false;
+        }
+        stats.retries.increment();
+        log.info("LLM 调用失败，准备第 {} 次重试，模型：{}，原因：{}", attempt, model, error.getMessage());
+        return true;
+    }
+
+    /**
+     * 第 attempt 次失败后的退避时长（全抖动）
+     */
+    private long backoffMillis(int attempt) {
+        double ceiling = Math.min(config.getMaxBackoffMillis(),
+                config.getInitialBackoffMillis() * Math.pow(config.getMultiplier(), attempt - 1));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(Math.max(1, (long) ceiling));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LLMClientException("LLM 调用重试等待被中断", e);
+        }
+    }
+
+    private ModelStats statsFor(String model) {
+        return statsByModel.computeIfAbsent(model != null ? model : "unknown", m -> new ModelStats());
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    /**
+     * 单个模型的重试统计
+     */
+    private static class ModelStats {
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+    }
+}
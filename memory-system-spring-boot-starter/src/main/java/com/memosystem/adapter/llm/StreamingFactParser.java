@@ -0,0 +1,223 @@
+package com.memosystem.adapter.llm;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.memosystem.core.memory.CandidateMemory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 候选记忆的增量 JSON 解析器
+ * 按流式输出的片段逐字符扫描，事实数组中的每个元素闭合时立即解析并回调，
+ * 不必等整段回复生成完毕
+ *
+ * 容错处理：
+ * - 跳过第一个 '[' 或 '{' 之前的内容（Markdown 代码块标记、说明文字等）
+ * - 支持直接数组 [...] 与对象 {"facts": [...]} 两种格式，数组元素可以是对象或字符串
+ * - 回复被截断时，已闭合的元素照常输出，未闭合的元素丢弃
+ * - 单个元素解析失败只跳过该元素
+ */
+@Slf4j
+public class StreamingFactParser {
+
+    private static final String FACTS_KEY = "facts";
+
+    private final Consumer<CandidateMemory> onFact;
+    private final List<CandidateMemory> facts = new ArrayList<>();
+    private final StringBuilder raw = new StringBuilder();
+
+    // 扫描状态
+    private final StringBuilder containers = new StringBuilder();
+    private boolean started;
+    private boolean inString;
+    private boolean escaped;
+    private int factsDepth = -1;
+    private StringBuilder element;
+    private StringBuilder rootKey;
+    private String lastRootKey;
+
+    /**
+     * @param onFact 每解析出一条候选记忆时回调，可为 null
+     */
+    public StreamingFactParser(Consumer<CandidateMemory> onFact) {
+        this.onFact = onFact;
+    }
+
+    /**
+     * 输入一段流式输出
+     */
+    public void feed(String chunk) {
+        if (chunk == null) {
+            return;
+        }
+        raw.append(chunk);
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 已解析出的候选记忆
+     */
+    public List<CandidateMemory> getFacts() {
+        return facts;
+    }
+
+    /**
+     * 已输入的完整内容
+     */
+    public String getContent() {
+        return raw.toString();
+    }
+
+    private void accept(char c) {
+        if (!started) {
+            if (c != '[' && c != '{') {
+                return;
+            }
+            started = true;
+        }
+        if (element != null) {
+            element.append(c);
+        }
+
+        if (inString) {
+            scanString(c);
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (inFactsArray() && element == null) {
+                    element = new StringBuilder().append(c);
+                } else if (inRootObject()) {
+                    rootKey = new StringBuilder();
+                }
+            }
+            case '{', '[' -> {
+                if (inFactsArray() && element == null) {
+                    element = new StringBuilder().append(c);
+                }
+                containers.append(c);
+                if (c == '[' && factsDepth < 0 && isFactsArray()) {
+                    factsDepth = containers.length();
+                }
+            }
+            case '}', ']' -> {
+                if (containers.length() == 0) {
+                    return;
+                }
+                containers.setLength(containers.length() - 1);
+                if (element != null && containers.length() == factsDepth) {
+                    emit(element.toString());
+                    element = null;
+                } else if (containers.length() < factsDepth) {
+                    // 事实数组结束，之后的内容不再解析
+                    factsDepth = Integer.MAX_VALUE;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void scanString(char c) {
+        if (escaped) {
+            escaped = false;
+        } else if (c == '\\') {
+            escaped = true;
+        } else if (c == '"') {
+            inString = false;
+            if (element != null && containers.length() == factsDepth) {
+                emit(element.toString());
+                element = null;
+            } else if (rootKey != null) {
+                lastRootKey = rootKey.toString();
+                rootKey = null;
+            }
+            return;
+        }
+        if (rootKey != null) {
+            rootKey.append(c);
+        }
+    }
+
+    private boolean inFactsArray() {
+        return factsDepth > 0 && containers.length() == factsDepth;
+    }
+
+    private boolean inRootObject() {
+        return containers.length() == 1 && containers.charAt(0) == '{';
+    }
+
+    /**
+     * 刚打开的数组是否为事实数组：根数组，或根对象中 "facts" 字段的值
+     */
+    private boolean isFactsArray() {
+        if (containers.length() == 1) {
+            return true;
+        }
+        return containers.length() == 2 && containers.charAt(0) == '{' && FACTS_KEY.equals(lastRootKey);
+    }
+
+    private void emit(String json) {
+        CandidateMemory memory;
+        try {
+            memory = toCandidateMemory(JsonParser.parseString(json));
+        } catch (RuntimeException e) {
+            log.debug("跳过无法解析的候选记忆元素：{}", json);
+            return;
+        }
+        if (memory == null) {
+            return;
+        }
+        facts.add(memory);
+        if (onFact != null) {
+            try {
+                onFact.accept(memory);
+            } catch (RuntimeException e) {
+                log.warn("候选记忆回调处理失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 与非流式解析的规则一致：fact 必填，category 默认 other，confidence 默认 0.8 并限制在 [0, 1]；
+     * 字符串元素的分类为 other、置信度 0.7
+     */
+    private static CandidateMemory toCandidateMemory(JsonElement element) {
+        if (element.isJsonPrimitive()) {
+            String fact = element.getAsString();
+            return fact == null || fact.isBlank() ? null : new CandidateMemory(fact.trim(), "other", 0.7);
+        }
+        if (!element.isJsonObject()) {
+            return null;
+        }
+
+        JsonObject obj = element.getAsJsonObject();
+        JsonElement factElement = obj.get("fact");
+        if (factElement == null || factElement.isJsonNull() || factElement.getAsString().isBlank()) {
+            return null;
+        }
+
+        String category = obj.has("category") && !obj.get("category").isJsonNull()
+                ? obj.get("category").getAsString().trim()
+                : "";
+        double confidence = 0.8;
+        if (obj.has("confidence") && !obj.get("confidence").isJsonNull()) {
+            try {
+                confidence = obj.get("confidence").getAsDouble();
+            } catch (RuntimeException e) {
+                log.debug("置信度格式无效，使用默认值：{}", obj.get("confidence"));
+            }
+        }
+        return new CandidateMemory(factElement.getAsString().trim(),
+                category.isEmpty() ? "other" : category,
+                Math.max(0.0, Math.min(1.0, confidence)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.memosystem.adapter.storage;
+
+import com.memosystem.core.conversation.MessagePair;
+import com.memosystem.core.summary.GlobalSummaryEntry;
+import com.memosystem.core.summary.SegmentSummary;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 会话历史存储接口（SPI）
+ * 定义消息对、全局摘要与分段摘要的持久化操作
+ *
+ * 内置实现：
+ * - FileConversationRepository：基于分段消息日志与 JSON 文件（默认）
+ * - H2ConversationRepository：基于嵌入式 H2 数据库，按 (sessionId, timestamp) 建立索引
+ *
+ * 通过 memory.storage.type 选择实现；使用方提供了 ConversationRepository Bean 时，不再注册内置实现
+ */
+public interface ConversationRepository {
+
+    /**
+     * 保存一条消息对
+     *
+     * @param messagePair 消息对
+     */
+    void saveMessage(MessagePair messagePair);
+
+    /**
+     * 批量保存消息对
+     *
+     * @param messagePairs 消息对列表
+     */
+    void saveMessages(List<MessagePair> messagePairs);
+
+    /**
+     * 获取指定会话最近的 N 条消息
+     *
+     * @param sessionId 会话ID
+     * @param limit     数量限制
+     * @return 消息列表（按时间顺序，最早的在前）
+     */
+    List<MessagePair> findRecentMessages(String sessionId, int limit);
+
+    /**
+     * 键集分页：获取指定会话在游标 (beforeTimestamp, beforeId) 之前的最近 N 条消息
+     * 翻页时将上一页最早一条消息的 timestamp 和 id 作为下一次的游标，
+     * 同一毫秒内的多条消息按 id 区分，不会在页边界被跳过；首次查询两者都传 Long.MAX_VALUE
+     *
+     * @param sessionId       会话ID
+     * @param beforeTimestamp 游标时间戳
+     * @param beforeId        游标消息ID，时间戳相同时只返回 id 更小的消息
+     * @param limit           数量限制
+     * @return 消息列表（按时间顺序，最早的在前）
+     */
+    List<MessagePair> findMessagesBefore(String sessionId, long beforeTimestamp, long beforeId, int limit);
+
+    /**
+     * 保存一条全局摘要
+     *
+     * @param summaryEntry 摘要条目
+     */
+    void saveSummary(GlobalSummaryEntry summaryEntry);
+
+    /**
+     * 获取指定会话最新的正式全局摘要
+     * 临时摘要（temporary 为 true）只用于生成正式摘要前的读取，不会被返回
+     *
+     * @param sessionId 会话ID
+     * @return 最新的正式摘要条目
+     */
+    Optional<GlobalSummaryEntry> findLatestSummary(String sessionId);
+
+    /**
+     * 保存一条分段摘要
+     * 默认不持久化，分段摘要只保留在内存中（会话状态过期或重启后不再可见）
+     *
+     * @param segment 分段摘要
+     */
+    default void saveSegment(SegmentSummary segment) {
+    }
+
+    /**
+     * 获取指定会话最近的 N 条分段摘要
+     *
+     * @param sessionId 会话ID
+     * @param limit     数量限制
+     * @return 分段摘要列表（按轮次顺序，最早的在前）
+     */
+    default List<SegmentSummary> findRecentSegments(String sessionId, int limit) {
+        return List.of();
+    }
+}
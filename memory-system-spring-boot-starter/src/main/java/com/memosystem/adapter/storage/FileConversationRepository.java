@@ -0,0 +1,69 @@
+package com.memosystem.adapter.storage;
+
+import com.memosystem.common.model.CommonFileRepository;
+import com.memosystem.core.conversation.MessagePair;
+import com.memosystem.core.summary.GlobalSummaryEntry;
+import com.memosystem.core.summary.SegmentSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 基于文件的会话历史存储（默认实现）
+ * 消息对写入分段消息日志，全局摘要追加到 global_summary.json，分段摘要追加到 summary_segments.json
+ * 由 MemoryStorageAutoConfiguration 注册
+ */
+@Slf4j
+public class FileConversationRepository implements ConversationRepository {
+
+    private static final String SUMMARY_FILE = "global_summary.json";
+    private static final String SEGMENT_FILE = "summary_segments.json";
+
+    @Autowired
+    private SegmentedMessageLog messageLog;
+
+    @Override
+    public void saveMessage(MessagePair messagePair) {
+        messageLog.append(messagePair);
+    }
+
+    @Override
+    public void saveMessages(List<MessagePair> messagePairs) {
+        for (MessagePair messagePair : messagePairs) {
+            messageLog.append(messagePair);
+        }
+    }
+
+    @Override
+    public List<MessagePair> findRecentMessages(String sessionId, int limit) {
+        return messageLog.loadRecentMessages(sessionId, limit);
+    }
+
+    @Override
+    public List<MessagePair> findMessagesBefore(String sessionId, long beforeTimestamp, long beforeId, int limit) {
+        return messageLog.loadMessagesBefore(sessionId, beforeTimestamp, beforeId, limit);
+    }
+
+    @Override
+    public void saveSummary(GlobalSummaryEntry summaryEntry) {
+        CommonFileRepository.save(SUMMARY_FILE, summaryEntry);
+    }
+
+    @Override
+    public Optional<GlobalSummaryEntry> findLatestSummary(String sessionId) {
+        return CommonFileRepository.loadLastContent(sessionId, SUMMARY_FILE, GlobalSummaryEntry.class,
+                entry -> !entry.isTemporary());
+    }
+
+    @Override
+    public void saveSegment(SegmentSummary segment) {
+        CommonFileRepository.save(SEGMENT_FILE, segment);
+    }
+
+    @Override
+    public List<SegmentSummary> findRecentSegments(String sessionId, int limit) {
+        return CommonFileRepository.loadRecentMessages(sessionId, SEGMENT_FILE, limit, SegmentSummary.class);
+    }
+}
\ No newline at end of file
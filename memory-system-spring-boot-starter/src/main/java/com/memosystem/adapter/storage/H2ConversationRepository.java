@@ -0,0 +1,272 @@
+package com.memosystem.adapter.storage;
+
+import com.memosystem.common.exception.StorageException;
+import com.memosystem.config.MemorySystemProperties;
+import com.memosystem.core.conversation.MessagePair;
+import com.memosystem.core.summary.GlobalSummaryEntry;
+import com.memosystem.core.summary.SegmentSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 基于嵌入式 H2 数据库的会话历史存储
+ * 无需外部服务，消息表按 (session_id, ts) 建立索引，
+ * “某会话最近 N 条消息”与键集分页均为索引范围扫描
+ *
+ * 启用方式：memory.storage.type=h2，并在 classpath 中引入 com.h2database:h2（缺少时启动失败），
+ * 由 MemoryStorageAutoConfiguration 注册
+ */
+@Slf4j
+public class H2ConversationRepository implements ConversationRepository {
+
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS mem0_message (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                session_id VARCHAR(255) NOT NULL,
+                user_message CLOB,
+                ai_response CLOB,
+                ts BIGINT NOT NULL
+            )""",
+            "CREATE INDEX IF NOT EXISTS idx_mem0_message_session_ts ON mem0_message (session_id, ts, id)",
+            """
+            CREATE TABLE IF NOT EXISTS mem0_global_summary (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                session_id VARCHAR(255) NOT NULL,
+                summary CLOB,
+                rolled_up_turn INT DEFAULT 0 NOT NULL,
+                is_temporary BOOLEAN DEFAULT FALSE NOT NULL,
+                created_at BIGINT NOT NULL
+            )""",
+            // 兼容早期版本创建的表
+            "ALTER TABLE mem0_global_summary ADD COLUMN IF NOT EXISTS rolled_up_turn INT DEFAULT 0 NOT NULL",
+            "ALTER TABLE mem0_global_summary ADD COLUMN IF NOT EXISTS is_temporary BOOLEAN DEFAULT FALSE NOT NULL",
+            "CREATE INDEX IF NOT EXISTS idx_mem0_summary_session ON mem0_global_summary (session_id, id)",
+            """
+            CREATE TABLE IF NOT EXISTS mem0_summary_segment (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                session_id VARCHAR(255) NOT NULL,
+                first_turn INT NOT NULL,
+                last_turn INT NOT NULL,
+                summary CLOB,
+                created_at BIGINT NOT NULL
+            )""",
+            "CREATE INDEX IF NOT EXISTS idx_mem0_segment_session ON mem0_summary_segment (session_id, id)"
+    };
+
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO mem0_message (session_id, user_message, ai_response, ts) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_MESSAGES_BEFORE =
+            "SELECT id, session_id, user_message, ai_response, ts FROM mem0_message "
+                    + "WHERE session_id = ? AND (ts < ? OR (ts = ? AND id < ?)) "
+                    + "ORDER BY ts DESC, id DESC LIMIT ?";
+    private static final String INSERT_SUMMARY =
+            "INSERT INTO mem0_global_summary (session_id, summary, rolled_up_turn, is_temporary, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_LATEST_SUMMARY =
+            "SELECT session_id, summary, rolled_up_turn FROM mem0_global_summary "
+                    + "WHERE session_id = ? AND is_temporary = FALSE ORDER BY id DESC LIMIT 1";
+    private static final String INSERT_SEGMENT =
+            "INSERT INTO mem0_summary_segment (session_id, first_turn, last_turn, summary, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_RECENT_SEGMENTS =
+            "SELECT session_id, first_turn, last_turn, summary, created_at FROM mem0_summary_segment "
+                    + "WHERE session_id = ? ORDER BY id DESC LIMIT ?";
+
+    @Autowired
+    private MemorySystemProperties memoryConfig;
+
+    private JdbcConnectionPool pool;
+
+    /**
+     * 初始化连接池并建表
+     */
+    @PostConstruct
+    private void initialize() {
+        MemorySystemProperties.Storage config = memoryConfig.getStorage();
+        pool = JdbcConnectionPool.create(config.getJdbcUrl(), config.getUsername(), config.getPassword());
+        pool.setMaxConnections(config.getMaxConnections());
+
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            for (String ddl : SCHEMA) {
+                stmt.execute(ddl);
+            }
+        } catch (SQLException e) {
+            throw new StorageException("初始化 H2 会话存储失败: " + e.getMessage(), e);
+        }
+        log.info("H2 会话存储初始化完成：{}", config.getJdbcUrl());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
+    @Override
+    public void saveMessage(MessagePair messagePair) {
+        saveMessages(Collections.singletonList(messagePair));
+    }
+
+    @Override
+    public void saveMessages(List<MessagePair> messagePairs) {
+        if (messagePairs == null || messagePairs.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, memoryConfig.getStorage().getBatchSize());
+
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_MESSAGE)) {
+                int pending = 0;
+                for (MessagePair msg : messagePairs) {
+                    ps.setString(1, msg.getSessionId());
+                    ps.setString(2, msg.getUserMessage());
+                    ps.setString(3, msg.getAiResponse());
+                    ps.setLong(4, msg.getTimestamp());
+                    ps.addBatch();
+                    if (++pending >= batchSize) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new StorageException("保存消息对失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<MessagePair> findRecentMessages(String sessionId, int limit) {
+        return findMessagesBefore(sessionId, Long.MAX_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    @Override
+    public List<MessagePair> findMessagesBefore(String sessionId, long beforeTimestamp, long beforeId, int limit) {
+        List<MessagePair> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement(SELECT_MESSAGES_BEFORE)) {
+            ps.setString(1, sessionId);
+            ps.setLong(2, beforeTimestamp);
+            ps.setLong(3, beforeTimestamp);
+            ps.setLong(4, beforeId);
+            ps.setInt(5, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    MessagePair msg = new MessagePair(
+                            rs.getString("session_id"),
+                            rs.getString("user_message"),
+                            rs.getString("ai_response"),
+                            rs.getLong("ts"));
+                    msg.setId(rs.getLong("id"));
+                    result.add(msg);
+                }
+            }
+        } catch (SQLException e) {
+            throw new StorageException("查询消息对失败: " + e.getMessage(), e);
+        }
+
+        // 查询结果从新到旧，反转为最早的在前
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public void saveSummary(GlobalSummaryEntry summaryEntry) {
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement(INSERT_SUMMARY)) {
+            ps.setString(1, summaryEntry.getSessionId());
+            ps.setString(2, summaryEntry.getGlobalSummary());
+            ps.setInt(3, summaryEntry.getRolledUpTurn());
+            ps.setBoolean(4, summaryEntry.isTemporary());
+            ps.setLong(5, System.currentTimeMillis());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new StorageException("保存全局摘要失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<GlobalSummaryEntry> findLatestSummary(String sessionId) {
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement(SELECT_LATEST_SUMMARY)) {
+            ps.setString(1, sessionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(new GlobalSummaryEntry(rs.getString("session_id"), rs.getString("summary"),
+                            rs.getInt("rolled_up_turn")));
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("读取全局摘要失败: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void saveSegment(SegmentSummary segment) {
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement(INSERT_SEGMENT)) {
+            ps.setString(1, segment.getSessionId());
+            ps.setInt(2, segment.getFirstTurn());
+            ps.setInt(3, segment.getLastTurn());
+            ps.setString(4, segment.getSummary());
+            ps.setLong(5, segment.getCreatedAt());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new StorageException("保存分段摘要失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<SegmentSummary> findRecentSegments(String sessionId, int limit) {
+        List<SegmentSummary> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+
+        try (Connection conn = pool.getConnection();
+                PreparedStatement ps = conn.prepareStatement(SELECT_RECENT_SEGMENTS)) {
+            ps.setString(1, sessionId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new SegmentSummary(
+                            rs.getString("session_id"),
+                            rs.getInt("first_turn"),
+                            rs.getInt("last_turn"),
+                            rs.getString("summary"),
+                            rs.getLong("created_at")));
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("读取分段摘要失败: {}", e.getMessage());
+        }
+
+        // 查询结果从新到旧，反转为最早的在前
+        Collections.reverse(result);
+        return result;
+    }
+}
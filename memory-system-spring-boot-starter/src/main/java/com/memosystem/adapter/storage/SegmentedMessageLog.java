@@ -0,0 +1,549 @@
+package com.memosystem.adapter.storage;
+
+import com.memosystem.common.exception.StorageException;
+import com.memosystem.common.model.CommonFileRepository;
+import com.memosystem.config.MemorySystemProperties;
+import com.memosystem.core.conversation.MessagePair;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jakarta.annotation.PostConstruct;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 分段滚动的消息日志
+ * 消息对按时间或大小写入分段文件，封存后的冷分段使用 gzip / zstd 压缩
+ *
+ * 目录结构：
+ * - manifest.json：记录每个分段的文件名、时间范围、会话集合与压缩方式
+ * - segment-000001.jsonl(.gz|.zst)：分段文件，每行一个 MessagePair 的 JSON（JSON Lines），
+ *   活跃分段以追加方式写入，每条消息只写一行；早期版本的分段与旧版单文件日志为 JSON 数组，读取时按内容识别
+ *
+ * 读取最近消息时根据清单倒序定位分段，跳过不包含该会话或时间范围不匹配的分段，
+ * 因此最近上下文的读取通常只会打开当前活跃分段。
+ *
+ * 与 FileConversationRepository 一起由 MemoryStorageAutoConfiguration 注册
+ */
+@Slf4j
+public class SegmentedMessageLog {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String ZSTD_OUTPUT_STREAM = "com.github.luben.zstd.ZstdOutputStream";
+    private static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+    private static final Gson GSON = new Gson();
+
+    @Autowired
+    private MemorySystemProperties memoryConfig;
+
+    /**
+     * 保护分段清单及活跃分段写入的锁
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 保护分段文件生命周期的读写锁：读取分段时持有读锁，封存后删除原始文件前需获取写锁，
+     * 保证读者按旧文件名读取期间该文件不会被删除
+     */
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    /**
+     * 分段清单（最早的在前，最后一个为活跃分段）
+     */
+    private final List<SegmentInfo> segments = new ArrayList<>();
+
+    private Path baseDir;
+    private String sealCompression;
+
+    /**
+     * 分段元数据
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SegmentInfo {
+        private long sequence;          // 分段序号
+        private String fileName;        // 分段文件名（相对目录）或旧版文件的绝对路径
+        private String compression;     // 压缩方式：none / gzip / zstd
+        private boolean sealed;         // 是否已封存
+        private long createdAt;         // 分段创建时间
+        private long startTime;         // 最早消息时间戳
+        private long endTime;           // 最晚消息时间戳
+        private int count;              // 消息数量
+        private long bytes;             // 估算的原始字节数
+        private Set<String> sessionIds = new HashSet<>(); // 包含的会话
+    }
+
+    /**
+     * 清单文件结构
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class Manifest {
+        private List<SegmentInfo> segments = new ArrayList<>();
+    }
+
+    /**
+     * 初始化目录并加载清单
+     */
+    @PostConstruct
+    private void initialize() {
+        MemorySystemProperties.MessageLog config = memoryConfig.getMessageLog();
+        this.baseDir = Paths.get(config.getDir());
+        this.sealCompression = resolveCompression(config.getCompression());
+
+        try {
+            Files.createDirectories(baseDir);
+        } catch (IOException e) {
+            throw new StorageException("无法创建消息日志目录: " + baseDir, e);
+        }
+
+        loadManifest();
+        registerLegacyFileIfNeeded(config.getLegacyFile());
+
+        // 崩溃恢复：非最后一个分段若未封存，重新执行封存
+        List<SegmentInfo> pending = new ArrayList<>();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (!segments.get(i).isSealed()) {
+                pending.add(segments.get(i));
+            }
+        }
+        // 早期版本的活跃分段为 JSON 数组，不能再按行追加，直接封存，下次写入时创建新分段
+        SegmentInfo active = activeSegment();
+        if (active != null && active.getFileName().endsWith(".json")) {
+            pending.add(active);
+        }
+        pending.forEach(this::sealSegment);
+
+        log.info("消息日志初始化完成：目录={}, 分段数={}, 冷分段压缩={}", baseDir, segments.size(), sealCompression);
+    }
+
+    /**
+     * 追加一条消息对
+     */
+    public void append(MessagePair messagePair) {
+        SegmentInfo toSeal = null;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            SegmentInfo active = activeSegment();
+            if (active == null || shouldRoll(active, now)) {
+                toSeal = active;
+                active = openSegment(now);
+            }
+
+            String line = GSON.toJson(messagePair);
+            appendLine(resolve(active), line);
+            recordMessage(active, messagePair, line.length());
+        } finally {
+            lock.unlock();
+        }
+
+        // 封存（压缩）在锁外进行，不阻塞新的写入
+        if (toSeal != null) {
+            sealSegment(toSeal);
+        }
+    }
+
+    /**
+     * 加载指定会话最近的 N 条消息（按时间顺序，最早的在前）
+     */
+    public List<MessagePair> loadRecentMessages(String sessionId, int count) {
+        return loadMessagesBefore(sessionId, Long.MAX_VALUE, Long.MAX_VALUE, count);
+    }
+
+    /**
+     * 加载指定会话在游标 (beforeTimestamp, beforeId) 之前的最近 N 条消息（按时间顺序，最早的在前）
+     * 可用于按 (时间戳, 消息ID) 做键集分页，消息ID 由分段序号和分段内行号组成
+     */
+    public List<MessagePair> loadMessagesBefore(String sessionId, long beforeTimestamp, long beforeId, int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+
+        // 读锁从复制分段信息开始持有到读取结束，期间封存不会删除这些分段的原始文件
+        fileLock.readLock().lock();
+        try {
+            return readMessagesBefore(sessionId, beforeTimestamp, beforeId, count);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private List<MessagePair> readMessagesBefore(String sessionId, long beforeTimestamp, long beforeId, int count) {
+        List<SegmentInfo> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                SegmentInfo segment = segments.get(i);
+                // 起始时间等于游标时间戳的分段可能含有同一毫秒、id 更小的消息，不能跳过
+                if (segment.getCount() == 0 || segment.getStartTime() > beforeTimestamp) {
+                    continue;
+                }
+                if (segment.getSessionIds().contains(sessionId)) {
+                    candidates.add(new SegmentInfo(segment.getSequence(), segment.getFileName(),
+                            segment.getCompression(), segment.isSealed(), segment.getCreatedAt(),
+                            segment.getStartTime(), segment.getEndTime(), segment.getCount(),
+                            segment.getBytes(), Collections.emptySet()));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        LinkedList<MessagePair> result = new LinkedList<>();
+        for (SegmentInfo segment : candidates) {
+            List<MessagePair> messages = readSegment(segment);
+            for (int i = messages.size() - 1; i >= 0 && result.size() < count; i--) {
+                MessagePair msg = messages.get(i);
+                if (sessionId.equals(msg.getSessionId()) && isBefore(msg, beforeTimestamp, beforeId)) {
+                    result.addFirst(msg);
+                }
+            }
+            if (result.size() >= count) {
+                break;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static boolean isBefore(MessagePair msg, long beforeTimestamp, long beforeId) {
+        return msg.getTimestamp() < beforeTimestamp
+                || (msg.getTimestamp() == beforeTimestamp && msg.getId() < beforeId);
+    }
+
+    /**
+     * 获取当前分段清单的快照
+     */
+    public List<SegmentInfo> getSegments() {
+        lock.lock();
+        try {
+            List<SegmentInfo> copy = new ArrayList<>();
+            for (SegmentInfo segment : segments) {
+                copy.add(new SegmentInfo(segment.getSequence(), segment.getFileName(), segment.getCompression(),
+                        segment.isSealed(), segment.getCreatedAt(), segment.getStartTime(), segment.getEndTime(),
+                        segment.getCount(), segment.getBytes(), new HashSet<>(segment.getSessionIds())));
+            }
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============ 分段管理 ============
+
+    private SegmentInfo activeSegment() {
+        if (segments.isEmpty()) {
+            return null;
+        }
+        SegmentInfo last = segments.get(segments.size() - 1);
+        return last.isSealed() ? null : last;
+    }
+
+    private boolean shouldRoll(SegmentInfo active, long now) {
+        MemorySystemProperties.MessageLog config = memoryConfig.getMessageLog();
+        if (active.getBytes() >= config.getMaxSegmentBytes()) {
+            return true;
+        }
+        long maxAge = TimeUnit.MINUTES.toMillis(config.getMaxSegmentMinutes());
+        return active.getCount() > 0 && maxAge > 0 && now - active.getCreatedAt() >= maxAge;
+    }
+
+    /**
+     * 创建新的活跃分段并持久化清单
+     */
+    private SegmentInfo openSegment(long now) {
+        long sequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).getSequence() + 1;
+        SegmentInfo segment = new SegmentInfo(sequence, String.format("segment-%06d.jsonl", sequence),
+                "none", false, now, 0, 0, 0, 0, new HashSet<>());
+        segments.add(segment);
+        saveManifest();
+        log.debug("消息日志滚动到新分段: {}", segment.getFileName());
+        return segment;
+    }
+
+    private void recordMessage(SegmentInfo segment, MessagePair messagePair, long bytes) {
+        long ts = messagePair.getTimestamp();
+        if (segment.getCount() == 0 || ts < segment.getStartTime()) {
+            segment.setStartTime(ts);
+        }
+        segment.setEndTime(Math.max(segment.getEndTime(), ts));
+        segment.setCount(segment.getCount() + 1);
+        segment.setBytes(segment.getBytes() + bytes);
+        if (messagePair.getSessionId() != null) {
+            segment.getSessionIds().add(messagePair.getSessionId());
+        }
+    }
+
+    /**
+     * 封存分段：按配置压缩后替换清单条目，再删除原始文件
+     */
+    private void sealSegment(SegmentInfo segment) {
+        Path source = resolve(segment);
+        String compression = isLegacy(segment) ? "none" : sealCompression;
+        String sealedName = segment.getFileName() + extensionOf(compression);
+
+        try {
+            if (!"none".equals(compression) && Files.exists(source)) {
+                Path target = baseDir.resolve(sealedName);
+                Path tmp = Files.createTempFile(baseDir, sealedName, ".tmp");
+                try (InputStream in = Files.newInputStream(source);
+                        OutputStream out = compressingStream(Files.newOutputStream(tmp), compression)) {
+                    in.transferTo(out);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.warn("压缩分段失败，保留未压缩文件: {}, {}", segment.getFileName(), e.getMessage());
+            compression = "none";
+            sealedName = segment.getFileName();
+        }
+
+        lock.lock();
+        try {
+            segment.setCompression(compression);
+            segment.setFileName(sealedName);
+            segment.setSealed(true);
+            saveManifest();
+        } finally {
+            lock.unlock();
+        }
+
+        if (!"none".equals(compression)) {
+            // 等待仍按旧文件名读取的读者结束后再删除；之后的读者从清单得到压缩后的文件名
+            fileLock.writeLock().lock();
+            try {
+                Files.deleteIfExists(source);
+            } catch (IOException e) {
+                log.debug("删除已压缩分段的原始文件失败: {}", source);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        }
+        log.debug("分段已封存: {}（{}）", sealedName, compression);
+    }
+
+    /**
+     * 以追加方式写入一行，不读取或重写已有内容
+     */
+    private static void appendLine(Path path, String line) {
+        try {
+            Files.write(path, (line + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new StorageException("写入消息分段失败: " + path, e);
+        }
+    }
+
+    private List<MessagePair> readSegment(SegmentInfo segment) {
+        Path path = resolve(segment);
+        if (!Files.exists(path)) {
+            // 刚创建、尚未写入消息的活跃分段没有文件
+            if (segment.getCount() > 0) {
+                log.warn("消息分段文件不存在: {}", path);
+            }
+            return Collections.emptyList();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                decompressingStream(Files.newInputStream(path), segment.getCompression()),
+                StandardCharsets.UTF_8))) {
+            // 根据第一个非空白字符识别格式：'[' 为早期的 JSON 数组，否则为 JSON Lines
+            int first;
+            do {
+                reader.mark(1);
+                first = reader.read();
+            } while (first != -1 && Character.isWhitespace(first));
+            if (first == -1) {
+                return Collections.emptyList();
+            }
+            reader.reset();
+            if (first == '[') {
+                List<MessagePair> messages = CommonFileRepository.loadAll(reader, MessagePair.class);
+                for (int i = 0; i < messages.size(); i++) {
+                    messages.get(i).setId(messageId(segment, i));
+                }
+                return messages;
+            }
+            return readLines(reader, segment);
+        } catch (IOException e) {
+            log.warn("读取消息分段失败: {}, {}", segment.getFileName(), e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 逐行解析 JSON Lines，跳过无法解析的行（如崩溃时写了一半的最后一行）
+     * 分段只追加不改写，行号在分段内稳定，可用来生成消息ID
+     */
+    private static List<MessagePair> readLines(BufferedReader reader, SegmentInfo segment) throws IOException {
+        List<MessagePair> messages = new ArrayList<>();
+        String line;
+        int lineNumber = -1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                MessagePair msg = GSON.fromJson(line, MessagePair.class);
+                msg.setId(messageId(segment, lineNumber));
+                messages.add(msg);
+            } catch (JsonSyntaxException e) {
+                log.warn("跳过无法解析的消息行: {}, {}", segment.getFileName(), e.getMessage());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 消息ID：高 32 位为分段序号，低 32 位为分段内位置，随写入顺序单调递增
+     */
+    private static long messageId(SegmentInfo segment, int position) {
+        return (segment.getSequence() << 32) | position;
+    }
+
+    // ============ 清单持久化 ============
+
+    private void loadManifest() {
+        Path manifestPath = baseDir.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestPath)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            Manifest manifest = GSON.fromJson(reader, Manifest.class);
+            if (manifest != null && manifest.getSegments() != null) {
+                segments.addAll(manifest.getSegments());
+            }
+        } catch (IOException | com.google.gson.JsonParseException e) {
+            log.warn("读取消息日志清单失败，将重新创建: {}", e.getMessage());
+        }
+
+        // 活跃分段的统计信息只在滚动时写入清单，启动时根据文件内容重建
+        SegmentInfo active = activeSegment();
+        if (active != null) {
+            active.setCount(0);
+            active.setBytes(0);
+            active.setSessionIds(new HashSet<>());
+            for (MessagePair msg : readSegment(active)) {
+                recordMessage(active, msg, GSON.toJson(msg).length());
+            }
+        }
+    }
+
+    private void saveManifest() {
+        CommonFileRepository.overwrite(baseDir.resolve(MANIFEST_FILE).toString(), new Manifest(segments));
+    }
+
+    /**
+     * 清单为空时，将旧版单文件日志登记为一个已封存的历史分段
+     */
+    private void registerLegacyFileIfNeeded(String legacyFile) {
+        if (!segments.isEmpty() || legacyFile == null || legacyFile.isBlank()) {
+            return;
+        }
+        Path legacyPath = Paths.get(legacyFile).toAbsolutePath().normalize();
+        if (!Files.exists(legacyPath)) {
+            return;
+        }
+
+        SegmentInfo legacy = new SegmentInfo(0, legacyPath.toString(), "none", true,
+                System.currentTimeMillis(), 0, 0, 0, 0, new HashSet<>());
+        for (MessagePair msg : readSegment(legacy)) {
+            recordMessage(legacy, msg, GSON.toJson(msg).length());
+        }
+        segments.add(legacy);
+        saveManifest();
+        log.info("已登记旧版消息日志为历史分段: {}，消息数: {}", legacyPath, legacy.getCount());
+    }
+
+    // ============ 压缩支持 ============
+
+    private Path resolve(SegmentInfo segment) {
+        return isLegacy(segment) ? Paths.get(segment.getFileName()) : baseDir.resolve(segment.getFileName());
+    }
+
+    private boolean isLegacy(SegmentInfo segment) {
+        return segment.getSequence() == 0;
+    }
+
+    private String resolveCompression(String configured) {
+        String value = configured == null ? "auto" : configured.trim().toLowerCase(Locale.ROOT);
+        boolean zstdAvailable = isZstdAvailable();
+        switch (value) {
+            case "none":
+            case "gzip":
+                return value;
+            case "zstd":
+                if (!zstdAvailable) {
+                    log.warn("classpath 中未找到 zstd-jni，冷分段压缩退化为 gzip");
+                    return "gzip";
+                }
+                return "zstd";
+            default:
+                return zstdAvailable ? "zstd" : "gzip";
+        }
+    }
+
+    private static boolean isZstdAvailable() {
+        try {
+            Class.forName(ZSTD_OUTPUT_STREAM);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static String extensionOf(String compression) {
+        switch (compression) {
+            case "gzip":
+                return ".gz";
+            case "zstd":
+                return ".zst";
+            default:
+                return "";
+        }
+    }
+
+    private static OutputStream compressingStream(OutputStream out, String compression) throws IOException {
+        switch (compression) {
+            case "gzip":
+                return new GZIPOutputStream(new BufferedOutputStream(out));
+            case "zstd":
+                return (OutputStream) reflectiveStream(ZSTD_OUTPUT_STREAM, OutputStream.class, out);
+            default:
+                return out;
+        }
+    }
+
+    private static InputStream decompressingStream(InputStream in, String compression) throws IOException {
+        switch (compression == null ? "none" : compression) {
+            case "gzip":
+                return new GZIPInputStream(new BufferedInputStream(in));
+            case "zstd":
+                return (InputStream) reflectiveStream(ZSTD_INPUT_STREAM, InputStream.class, in);
+            default:
+                return in;
+        }
+    }
+
+    private static Object reflectiveStream(String className, Class<?> argType, Object arg) throws IOException {
+        try {
+            return Class.forName(className).getConstructor(argType).newInstance(arg);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("无法创建 zstd 流: " + e.getMessage(), e);
+        }
+    }
+}
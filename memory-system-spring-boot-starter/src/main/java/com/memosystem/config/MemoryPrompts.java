@@ -415,6 +415,72 @@ Please note to return the IDs in the output from the input IDs only and do not g
         }
 """;
 
+    /**
+     * 批量决策附加说明：一次请求中对多条候选事实逐条给出操作
+     */
+    public static final String BATCH_MEMORY_DECISION_INSTRUCTION = """
+【批量决策说明】
+下面一次给出多条新提取的事实，每条事实带有编号（如 "f0"、"f1"）以及各自检索到的现有相似记忆。
+请对每条事实独立判断，给出一个操作：
+- ADD：事实是新信息，加入记忆
+- UPDATE：事实与其最相似的现有记忆描述同一件事，但信息更完整或已经变化，更新该记忆
+- DELETE：事实与其最相似的现有记忆相矛盾，删除该记忆
+- NONE：事实已经存在或无关，不做改变
+
+只输出如下格式的 JSON，不要输出其他内容；每条事实恰好对应一个条目，id 使用事实编号：
+{"memory": [{"id": "f0", "event": "ADD"}, {"id": "f1", "event": "NONE"}]}
+""";
+
+    /**
+     * 融合调用附加说明：在抽取候选记忆的同时输出更新后的全局摘要
+     * 与候选记忆抽取提示词一起使用，"facts" 放在前面，流式抽取时可以先逐条解析事实
+     */
+    public static final String COMBINED_SUMMARY_INSTRUCTION = """
+【全局摘要更新】
+除了提取事实，还需要基于"系统摘要"和"新消息"生成更新后的全局摘要：
+1. 保留当前全局摘要中的所有重要信息
+2. 融合新消息中的关键信息，按时间顺序记录交互，不要改写用户给出的具体数据
+3. 结构为：概览（用户目标、当前进展）+ 按顺序编号的交互记录
+4. 确保摘要逻辑清晰、层次分明，长度保持在 500-1000 字符范围内
+5. 保持中文表述风格，简洁准确
+
+只输出如下格式的 JSON，不要输出其他内容；"facts" 在前，"summary" 在后：
+{"facts": [{"fact": "...", "category": "...", "confidence": 0.9}], "summary": "更新后的全局摘要"}
+""";
+
+    /**
+     * 全局摘要增量更新提示词：只输出对当前摘要各节条目的修改补丁，不重写整个摘要
+     */
+    public static final String SUMMARY_PATCH_INSTRUCTION = """
+你是一个维护用户全局摘要的助手。全局摘要按节组织（"## 节名"），每节是一组编号条目。
+请根据新增对话，只输出对当前摘要的修改补丁，不要重写整个摘要：
+- add：在某节末尾新增一条（节不存在时自动创建），如新的交互记录、新的关键信息
+- modify：修改某节的第 item 条，用于信息发生变化或需要补充（如当前进展）
+- remove：删除某节的第 item 条，用于信息已过时或与新对话矛盾
+
+要求：
+1. 条目编号以下面给出的当前摘要为准，从 1 开始
+2. 建议的节：概览（用户目标、当前进展）、交互记录（按时间顺序，每轮一条）、关键信息（用户给出的具体数据与结论）
+3. 每条简洁准确，保持中文表述风格，不要改写用户给出的具体数据
+4. 没有需要修改的内容时返回 {"ops": []}
+
+只输出如下格式的 JSON，不要输出其他内容：
+{"ops": [{"op": "add", "section": "交互记录", "text": "..."}, {"op": "modify", "section": "概览", "item": 2, "text": "..."}, {"op": "remove", "section": "关键信息", "item": 3}]}
+""";
+
+    /**
+     * 分段摘要提示词：把一段连续的对话压缩为一条分段摘要（%d 为字符数上限）
+     */
+    public static final String SEGMENT_SUMMARY_INSTRUCTION = """
+你是一个对话摘要助手。请把下面这段连续的对话压缩为一条分段摘要：
+1. 按时间顺序概括这段对话中用户的目标、提出的问题、做出的决定和得到的结论
+2. 保留用户给出的具体数据（名称、数字、日期等），不要改写
+3. 不要重复下面给出的全局摘要中已有的背景信息
+4. 不超过 %d 个字符，保持中文表述风格，简洁准确
+
+输出仅包含分段摘要内容，不需要额外说明。
+""";
+
     /**
      * 构建包含全局摘要和局部记忆的完整提示词
      */
@@ -444,4 +510,14 @@ AI：%s
                 recentMemories.isEmpty() ? "（暂无最近记忆）" : recentMemories,
                 userMessage, aiResponse);
     }
+
+    /**
+     * 构建融合调用的提示词：抽取候选记忆并更新全局摘要
+     * 对话与全局摘要只在请求中出现一次
+     */
+    public static String buildCombinedExtractionPrompt(String globalSummary, String recentMemories,
+                                                       String userMessage, String aiResponse) {
+        return buildCompleteExtractionPrompt(globalSummary, recentMemories, userMessage, aiResponse)
+                + "\n" + COMBINED_SUMMARY_INSTRUCTION;
+    }
 }
\ No newline at end of file
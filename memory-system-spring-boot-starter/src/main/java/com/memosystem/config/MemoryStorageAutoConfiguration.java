@@ -0,0 +1,56 @@
+package com.memosystem.config;
+
+import com.memosystem.adapter.storage.ConversationRepository;
+import com.memosystem.adapter.storage.FileConversationRepository;
+import com.memosystem.adapter.storage.H2ConversationRepository;
+import com.memosystem.adapter.storage.SegmentedMessageLog;
+import com.memosystem.common.exception.StorageException;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 会话历史存储自动配置
+ * 按 memory.storage.type 注册内置的 ConversationRepository；使用方已提供 ConversationRepository Bean 时不注册
+ *
+ * 本类只作为自动配置加载（不参与组件扫描），在使用方的配置之后处理，@ConditionalOnMissingBean 才能看到使用方的 Bean
+ */
+@AutoConfiguration("mem0MemoryStorageAutoConfiguration")
+@ConditionalOnMissingBean(ConversationRepository.class)
+public class MemoryStorageAutoConfiguration {
+
+    private static final String H2_DRIVER = "org.h2.Driver";
+
+    /**
+     * 文件存储使用的分段消息日志
+     */
+    @Bean("mem0SegmentedMessageLog")
+    @ConditionalOnProperty(prefix = "memory.storage", name = "type", havingValue = "file", matchIfMissing = true)
+    public SegmentedMessageLog segmentedMessageLog() {
+        return new SegmentedMessageLog();
+    }
+
+    /**
+     * 基于文件的会话历史存储（默认）
+     */
+    @Bean("mem0FileConversationRepository")
+    @ConditionalOnProperty(prefix = "memory.storage", name = "type", havingValue = "file", matchIfMissing = true)
+    public ConversationRepository fileConversationRepository() {
+        return new FileConversationRepository();
+    }
+
+    /**
+     * 基于嵌入式 H2 的会话历史存储，classpath 中缺少 H2 驱动时启动失败
+     */
+    @Bean("mem0H2ConversationRepository")
+    @ConditionalOnProperty(prefix = "memory.storage", name = "type", havingValue = "h2")
+    public ConversationRepository h2ConversationRepository() {
+        if (!ClassUtils.isPresent(H2_DRIVER, getClass().getClassLoader())) {
+            throw new StorageException("memory.storage.type=h2，但 classpath 中未找到 " + H2_DRIVER
+                    + "，请引入 com.h2database:h2 依赖");
+        }
+        return new H2ConversationRepository();
+    }
+}
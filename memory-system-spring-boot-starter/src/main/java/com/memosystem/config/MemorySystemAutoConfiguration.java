@@ -2,18 +2,22 @@ package com.memosystem.config;
 
 import com.memosystem.service.EmbeddingService;
 import com.memosystem.service.impl.DefaultEmbeddingService;
+import org.springframework.boot.autoconfigure.AutoConfigurationExcludeFilter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 
 /**
  * Memory System 自动配置类
  * 为 Spring Boot 应用自动配置所有必要的 Bean
+ * 组件扫描跳过自动配置类（如 MemoryStorageAutoConfiguration），它们由 Spring Boot 在使用方的配置之后加载
  */
 @Configuration("mem0MemorySystemAutoConfiguration")
-@ComponentScan(basePackages = "com.memosystem")
+@ComponentScan(basePackages = "com.memosystem",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = AutoConfigurationExcludeFilter.class))
 @EnableConfigurationProperties(MemorySystemProperties.class)
 public class MemorySystemAutoConfiguration {
 
@@ -26,6 +26,46 @@ public class MemorySystemProperties {
      */
     private int shortTermMemorySize = 10;
 
+    /**
+     * 短期记忆上下文的 token 预算（估算值），控制每轮提示词中近期对话部分的大小
+     */
+    private int shortTermTokenBudget = 1200;
+
+    /**
+     * 短期记忆会话缓存配置
+     */
+    private ShortTermCache shortTermCache = new ShortTermCache();
+
+    /**
+     * 记忆更新决策配置
+     */
+    private Decision decision = new Decision();
+
+    /**
+     * 候选记忆抽取配置
+     */
+    private Extraction extraction = new Extraction();
+
+    /**
+     * 全局摘要会话状态缓存配置
+     */
+    private SummaryCache summaryCache = new SummaryCache();
+
+    /**
+     * 全局摘要合并生成配置
+     */
+    private SummaryDebounce summaryDebounce = new SummaryDebounce();
+
+    /**
+     * 全局摘要增量更新配置
+     */
+    private SummaryPatch summaryPatch = new SummaryPatch();
+
+    /**
+     * 分层摘要配置
+     */
+    private SummaryHierarchy summaryHierarchy = new SummaryHierarchy();
+
     /**
      * Qdrant 向量数据库路径
      */
@@ -51,6 +91,16 @@ public class MemorySystemProperties {
      */
     private ThreadPool threadPool = new ThreadPool();
 
+    /**
+     * 消息日志配置
+     */
+    private MessageLog messageLog = new MessageLog();
+
+    /**
+     * 会话历史存储配置
+     */
+    private Storage storage = new Storage();
+
     /**
      * 获取集合完整路径
      */
@@ -101,4 +151,232 @@ public class MemorySystemProperties {
          */
         private int queueCapacity = 100;
     }
-}
\ No newline at end of file
+
+    /**
+     * 记忆更新决策配置
+     */
+    @Data
+    public static class Decision {
+        /**
+         * 是否启用批量决策：一轮对话的所有候选记忆合并为一次 LLM 决策调用
+         */
+        private boolean batchEnabled = true;
+
+        /**
+         * 单次批量决策的最大候选记忆数，超出时拆分为多个批次
+         */
+        private int maxBatchSize = 8;
+
+        /**
+         * 是否启用决策快速路径：明确的情况本地决策，不调用 LLM
+         */
+        private boolean fastPathEnabled = true;
+
+        /**
+         * 快速路径 NOOP 阈值：最相似记忆的相似度不低于该值时视为已有记忆的复述
+         */
+        private double noopSimilarityThreshold = 0.95;
+    }
+
+    /**
+     * 候选记忆抽取配置
+     */
+    @Data
+    public static class Extraction {
+        /**
+         * 是否流式抽取：候选记忆逐条解析，到达后立即开始向量生成与相似记忆检索
+         */
+        private boolean streamingEnabled = true;
+
+        /**
+         * 是否融合调用：一次 LLM 调用（记忆提取模型）同时返回候选记忆与更新后的全局摘要，
+         * 对话与摘要只发送一次；关闭时抽取与摘要更新分别调用各自的模型
+         * 融合调用每轮都更新摘要，不经过摘要合并生成（summaryDebounce）；启用分层摘要（summaryHierarchy）时不生效
+         */
+        private boolean combinedSummaryEnabled = false;
+    }
+
+    /**
+     * 短期记忆会话缓存配置类
+     * 缓存使用 W-TinyLFU 准入策略，按会话数量上限和访问过期时间淘汰
+     */
+    @Data
+    public static class ShortTermCache {
+        /**
+         * 最多缓存的会话数
+         */
+        private long maxSessions = 100_000;
+
+        /**
+         * 会话最后一次访问后的过期时间（分钟）
+         */
+        private long expireAfterAccessMinutes = 30;
+    }
+
+    /**
+     * 全局摘要会话状态缓存配置类
+     * 缓存每个会话的最新摘要与交互次数，未命中时从摘要存储加载
+     */
+    @Data
+    public static class SummaryCache {
+        /**
+         * 最多缓存的会话数
+         */
+        private long maxSessions = 100_000;
+
+        /**
+         * 会话最后一次访问后的过期时间（分钟）
+         */
+        private long expireAfterAccessMinutes = 30;
+    }
+
+    /**
+     * 全局摘要合并生成配置类
+     * 对话轮次累计到任一阈值时才调用 LLM 汇总一次，其间由临时摘要覆盖
+     */
+    @Data
+    public static class SummaryDebounce {
+        /**
+         * 是否启用；关闭时每轮对话都重新生成一次摘要
+         */
+        private boolean enabled = true;
+
+        /**
+         * 累计的对话轮数达到该值时立即汇总
+         */
+        private int maxTurns = 10;
+
+        /**
+         * 第一轮对话入队后最多等待的秒数
+         */
+        private long maxDelaySeconds = 60;
+
+        /**
+         * 累计对话的估算 token 数达到该值时立即汇总
+         */
+        private int maxPendingTokens = 3000;
+
+        /**
+         * 应用关闭时汇总所有待汇总的轮次，并最多等待该秒数让摘要更新完成
+         */
+        private long shutdownTimeoutSeconds = 30;
+    }
+
+    /**
+     * 全局摘要增量更新配置类
+     * LLM 只返回对摘要各节条目的补丁，由本地应用，不再每次重写整个摘要
+     */
+    @Data
+    public static class SummaryPatch {
+        /**
+         * 是否启用；关闭时每次都完整重写摘要
+         */
+        private boolean enabled = false;
+
+        /**
+         * 摘要超过该字符数时改用一次完整重写来压缩
+         */
+        private int maxChars = 2000;
+    }
+
+    /**
+     * 分层摘要配置类
+     * 每批待汇总的对话先压缩为一条分段摘要，累计若干条分段摘要后再汇总进会话全局摘要；
+     * 构建提示词时在 token 预算内组合全局摘要与最近的分段摘要
+     */
+    @Data
+    public static class SummaryHierarchy {
+        /**
+         * 是否启用；关闭时每批对话直接汇总进全局摘要
+         */
+        private boolean enabled = false;
+
+        /**
+         * 累计多少条尚未汇总的分段摘要后汇总进全局摘要
+         */
+        private int segmentsPerRollup = 5;
+
+        /**
+         * 单条分段摘要的字符数上限
+         */
+        private int segmentMaxChars = 300;
+
+        /**
+         * 每个会话在内存中保留（及首次使用时从存储加载）的最近分段摘要条数，应不小于 segmentsPerRollup
+         */
+        private int maxSegments = 20;
+
+        /**
+         * 提示词中摘要部分（全局摘要 + 分段摘要）的 token 预算（估算值）
+         */
+        private int contextTokenBudget = 1000;
+    }
+
+    /**
+     * 消息日志配置类
+     * 消息对按时间或大小滚动写入分段文件，已封存的冷分段会被压缩
+     */
+    @Data
+    public static class MessageLog {
+        /**
+         * 分段文件及清单所在目录
+         */
+        private String dir = "./data/messages";
+
+        /**
+         * 单个分段的最大字节数，超过后滚动到新分段
+         */
+        private long maxSegmentBytes = 4L * 1024 * 1024;
+
+        /**
+         * 单个分段的最长时间跨度（分钟），超过后滚动到新分段
+         */
+        private long maxSegmentMinutes = 60;
+
+        /**
+         * 冷分段压缩方式：auto（classpath 中有 zstd 时使用 zstd，否则 gzip）、zstd、gzip、none
+         */
+        private String compression = "auto";
+
+        /**
+         * 旧版单文件消息日志，清单为空时作为历史分段登记（不移动原文件）
+         */
+        private String legacyFile = "messages.json";
+    }
+
+    /**
+     * 会话历史存储配置类
+     */
+    @Data
+    public static class Storage {
+        /**
+         * 存储实现：file（分段消息日志 + JSON 文件，默认）、h2（嵌入式数据库）
+         */
+        private String type = "file";
+
+        /**
+         * H2 数据库连接地址
+         */
+        private String jdbcUrl = "jdbc:h2:file:./data/memory-db";
+
+        /**
+         * H2 用户名
+         */
+        private String username = "sa";
+
+        /**
+         * H2 密码
+         */
+        private String password = "";
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxConnections = 10;
+
+        /**
+         * 批量写入时每批的最大条数
+         */
+        private int batchSize = 100;
+    }
+}
@@ -1,5 +1,11 @@
 package com.memosystem.controller;
 
+import com.memosystem.adapter.llm.LLMAdmissionController;
+import com.memosystem.adapter.llm.LLMClientGuard;
+import com.memosystem.adapter.llm.LLMHedgingPolicy;
+import com.memosystem.adapter.llm.LLMRequestCoalescer;
+import com.memosystem.adapter.llm.LLMResponseCache;
+import com.memosystem.adapter.llm.LLMRetryPolicy;
 import com.memosystem.common.model.Result;
 import com.memosystem.config.TimingMonitor;
 import com.memosystem.dto.ChatRequestDTO;
@@ -7,16 +13,27 @@ import com.memosystem.dto.UpdateSystemContextDTO;
 import com.memosystem.vo.PromptResponseVO;
 import com.memosystem.vo.VersionInfoVO;
 import com.memosystem.service.ConversationService;
+import com.memosystem.service.GlobalSummaryService;
+import com.memosystem.service.MemoryUpdateService;
+import com.memosystem.service.ShortTermMemoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /**
  * 对话控制器
@@ -28,9 +45,41 @@ import java.util.Map;
 @Slf4j
 public class ConversationController {
 
+    /**
+     * 流式对话的最长推送时间
+     */
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private ShortTermMemoryService shortTermMemoryService;
+
+    @Autowired
+    private GlobalSummaryService globalSummaryService;
+
+    @Autowired
+    private MemoryUpdateService memoryUpdateService;
+
+    @Autowired
+    private LLMResponseCache llmResponseCache;
+
+    @Autowired
+    private LLMRequestCoalescer llmRequestCoalescer;
+
+    @Autowired
+    private LLMAdmissionController llmAdmissionController;
+
+    @Autowired
+    private LLMRetryPolicy llmRetryPolicy;
+
+    @Autowired
+    private LLMHedgingPolicy llmHedgingPolicy;
+
+    @Autowired
+    private List<LLMClientGuard> llmClientGuards;
+
     /**
      * 处理用户对话请求（支持自定义参数）
      * 
@@ -56,6 +105,74 @@ public class ConversationController {
         }
     }
 
+    /**
+     * 流式对话（SSE）
+     * 事件：delta（增量回复）、done（完整回复）、error（失败信息）；
+     * 回复输出完毕即结束推送，记忆更新在后台进行
+     * 
+     * @param request 对话请求参数
+     * @return SSE 推送
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "流式对话交互", description = "以 text/event-stream 逐段返回 AI 回复，回复结束后在后台更新记忆")
+    public SseEmitter chatStream(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "对话请求参数", required = true) @jakarta.validation.Valid @RequestBody ChatRequestDTO request) {
+        log.info("收到流式对话请求 - sessionId: {}, message长度: {}",
+                request.getSessionId(), request.getMessage().length());
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        // 客户端断开、超时或出错后不再推送，并取消上游生成；被取消的回复不会写入记忆
+        AtomicBoolean closed = new AtomicBoolean(false);
+        CompletableFuture<String> responseTask = conversationService.processConversationStream(
+                request.getSessionId(), request.getMessage(),
+                delta -> {
+                    if (!closed.get()) {
+                        sendEvent(emitter, "delta", delta);
+                    }
+                });
+        Runnable onClosed = () -> {
+            if (closed.compareAndSet(false, true) && !responseTask.isDone()) {
+                log.info("流式连接已关闭，取消上游生成 - sessionId: {}", request.getSessionId());
+                responseTask.cancel(true);
+            }
+        };
+        emitter.onCompletion(onClosed);
+        emitter.onError(e -> onClosed.run());
+        emitter.onTimeout(() -> {
+            onClosed.run();
+            sendEvent(emitter, "error", "对话处理超时");
+            emitter.complete();
+        });
+
+        responseTask.whenComplete((aiResponse, ex) -> {
+            if (closed.get()) {
+                return;
+            }
+            if (ex != null) {
+                Throwable cause = ex instanceof java.util.concurrent.CompletionException && ex.getCause() != null
+                        ? ex.getCause()
+                        : ex;
+                log.error("流式对话异常 - sessionId: {}, error: {}", request.getSessionId(), cause.getMessage());
+                sendEvent(emitter, "error", "对话处理失败: " + cause.getMessage());
+            } else {
+                sendEvent(emitter, "done", aiResponse);
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * 推送一条 SSE 事件，客户端断开时只记录日志
+     */
+    private void sendEvent(SseEmitter emitter, String name, String data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE 推送失败（客户端可能已断开）: {}", e.getMessage());
+        }
+    }
+
     /**
      * 获取带相似记忆的完整提示词
      * 
@@ -107,6 +224,31 @@ public class ConversationController {
         return Result.success("Memory System is running");
     }
 
+    /**
+     * 运行统计接口
+     * 
+     * @return 短期记忆缓存、记忆库操作与 LLM 调用（缓存、合并、准入、重试、对冲、熔断隔离）的统计信息
+     */
+    @GetMapping("/stats")
+    @Operation(summary = "运行统计", description = "获取短期记忆缓存、记忆库操作与 LLM 调用（缓存、合并、准入、重试、对冲、熔断隔离）的统计信息")
+    public Result<Map<String, String>> stats() {
+        Map<String, String> stats = new LinkedHashMap<>();
+        stats.put("shortTermCache", shortTermMemoryService.getCacheStatistics());
+        stats.put("summaryCache", globalSummaryService.getCacheStatistics());
+        stats.put("summaryUpdate", globalSummaryService.getUpdateStatistics());
+        stats.put("memoryUpdate", memoryUpdateService.getMemoryStatistics());
+        stats.put("memoryDecision", memoryUpdateService.getDecisionStatistics());
+        stats.put("llmResponseCache", llmResponseCache.getStatistics());
+        stats.put("llmRequestCoalescing", llmRequestCoalescer.getStatistics());
+        stats.put("llmAdmission", llmAdmissionController.getStatistics());
+        stats.put("llmRetry", llmRetryPolicy.getStatistics());
+        stats.put("llmHedging", llmHedgingPolicy.getStatistics());
+        stats.put("llmClientGuards", llmClientGuards.stream()
+                .map(LLMClientGuard::getStatistics)
+                .collect(Collectors.joining("; ")));
+        return Result.success("统计信息获取成功", stats);
+    }
+
     /**
      * 获取系统版本信息
      * 
@@ -3,6 +3,9 @@ package com.memosystem.service;
 
 import com.memosystem.common.model.ParsedMessage;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * 对话增强服务接口
  * 负责构建增强的提示词并获取 AI 响应
@@ -51,4 +54,12 @@ public interface ConversationEnhancerService {
      * @return LLM 生成的响应文本
      */
     String getAIResponse(String enhancedPrompt, String model);
-}
\ No newline at end of file
+
+    /**
+     * 流式调用 LLM 获取对提示词的响应
+     * @param enhancedPrompt 增强后的提示词
+     * @param onDelta 每收到一段增量内容时的回调
+     * @return 以完整响应文本完成的 Future
+     */
+    CompletableFuture<String> getAIResponseStream(String enhancedPrompt, Consumer<String> onDelta);
+}
@@ -3,12 +3,26 @@ package com.memosystem.service;
 import com.memosystem.common.model.Result;
 import lombok.NonNull;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface ConversationService {
     // 入参: 用户消息
     // 出参: 包含AI回复和相关上下文的完整结果
     Map<String, Object> processConversation(String sessionId, String userMessage);
 
+    /**
+     * 流式处理对话
+     * AI 回复按增量回调输出，回复生成完毕后 Future 完成，随后在后台更新系统上下文
+     * 取消返回的 Future 会中止上游的流式调用，被取消的回复不会更新系统上下文
+     * 
+     * @param sessionId   会话ID
+     * @param userMessage 用户消息
+     * @param onDelta     每收到一段增量回复时的回调
+     * @return 以完整 AI 回复完成的 Future
+     */
+    CompletableFuture<String> processConversationStream(String sessionId, String userMessage, Consumer<String> onDelta);
+
     /**
      * 获取构建完成的提示词（包含相似记忆的完整上下文）
      * 
@@ -33,4 +47,14 @@ public interface ConversationService {
      * @param aiResponse  AI回复内容
      */
     Result<String> updateSystemContext(String sessionId, String userMessage, String aiResponse);
-}
\ No newline at end of file
+
+    /**
+     * 异步更新系统上下文信息
+     * 
+     * @param sessionId   会话ID
+     * @param userMessage 用户消息
+     * @param aiResponse  AI回复内容
+     * @return 更新结果的 Future
+     */
+    CompletableFuture<Result<String>> updateSystemContextAsync(String sessionId, String userMessage, String aiResponse);
+}
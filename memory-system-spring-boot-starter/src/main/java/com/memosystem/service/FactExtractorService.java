@@ -1,8 +1,11 @@
 package com.memosystem.service;
 
 import com.memosystem.core.memory.CandidateMemory;
+import com.memosystem.core.memory.ExtractionWithSummary;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 事实抽取服务接口
@@ -40,4 +43,56 @@ public interface FactExtractorService {
             String aiResponse,
             String model
     );
-}
\ No newline at end of file
+
+    /**
+     * 异步抽取候选记忆
+     * 抽取失败时以空列表完成，不会以异常完成
+     * @param globalSummary 全局记忆摘要
+     * @param recentMemories 最近的对话记忆
+     * @param userMessage 用户的输入消息
+     * @param aiResponse AI 的响应消息
+     * @return 候选记忆列表的 Future
+     */
+    CompletableFuture<List<CandidateMemory>> extractCandidateMemoriesAsync(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse
+    );
+
+    /**
+     * 流式抽取候选记忆，每解析出一条即回调 onCandidate，不必等待完整回复
+     * 抽取失败时以空列表完成，不会以异常完成（失败前已回调的候选记忆仍然有效）
+     * @param globalSummary 全局记忆摘要
+     * @param recentMemories 最近的对话记忆
+     * @param userMessage 用户的输入消息
+     * @param aiResponse AI 的响应消息
+     * @param onCandidate 每得到一条候选记忆时的回调
+     * @return 全部候选记忆的 Future
+     */
+    CompletableFuture<List<CandidateMemory>> extractCandidateMemoriesStream(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse,
+            Consumer<CandidateMemory> onCandidate
+    );
+
+    /**
+     * 融合调用：一次 LLM 调用同时抽取候选记忆并生成更新后的全局摘要
+     * 调用失败时以空候选列表、null 摘要完成，不会以异常完成
+     * @param globalSummary 全局记忆摘要
+     * @param recentMemories 最近的对话记忆
+     * @param userMessage 用户的输入消息
+     * @param aiResponse AI 的响应消息
+     * @param onCandidate 非 null 时流式调用，每得到一条候选记忆即回调
+     * @return 候选记忆与全局摘要的 Future
+     */
+    CompletableFuture<ExtractionWithSummary> extractWithSummaryAsync(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse,
+            Consumer<CandidateMemory> onCandidate
+    );
+}
@@ -1,5 +1,9 @@
 package com.memosystem.service;
 
+import com.memosystem.core.summary.SummarySnapshot;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 全局摘要服务接口
  * 负责生成和维护用户的全局记忆摘要
@@ -25,11 +29,64 @@ public interface GlobalSummaryService {
      */
     void updateGlobalSummary(String sessionId, String userMessage, String aiResponse);
 
+    /**
+     * 异步更新全局摘要
+     * 等待 LLM 响应期间不占用调用线程，LLM 调用失败时使用备选策略追加，不会以异常完成
+     * 启用摘要合并生成时，对话先进入待汇总队列，累计到阈值后才一起汇总；本轮未触发汇总时 Future 立即完成
+     * 返回前已发布追加了本轮对话的临时摘要，调用方无需再调用 appendTemporaryTurn
+     * @return 摘要更新完成的 Future
+     */
+    CompletableFuture<Void> updateGlobalSummaryAsync(String sessionId, String userMessage, String aiResponse);
+
+    /**
+     * 保存融合调用（抽取候选记忆 + 更新摘要）生成的全局摘要
+     * summary 为空时使用备选策略追加新的对话；与同一会话的其他摘要更新按顺序串行执行
+     * 生成期间已有其他正式摘要写入（版本号大于 baseVersion）时丢弃 summary，基于最新摘要重新汇总本轮对话
+     * @param baseVersion 生成 summary 时所依据的摘要快照版本号
+     * @return 摘要保存完成的 Future
+     */
+    CompletableFuture<Void> applyGeneratedSummaryAsync(String sessionId, String summary, long baseVersion,
+            String userMessage, String aiResponse);
+
     /**
      * 获取当前的全局摘要
+     * 直接读取会话状态缓存，不扫描摘要存储；启用分层摘要时包含尚未汇总的分段摘要
      * @return 当前的全局摘要文本
      */
     String getCurrentSummary(String sessionId);
 
+    /**
+     * 构建提示词中的摘要上下文
+     * 启用分层摘要时在 token 预算内组合全局摘要与最近的分段摘要；未启用时返回当前摘要
+     * @param tokenBudget token 预算（估算值）
+     * @return 摘要上下文文本
+     */
+    String buildSummaryContext(String sessionId, int tokenBudget);
+
+    /**
+     * 获取当前全局摘要及其版本号
+     * 快照只包含全局摘要本身，不含分层摘要模式下尚未汇总的分段摘要；需要完整摘要上下文时使用 buildSummaryContext
+     * @return 摘要快照，无摘要时内容为默认提示文本、版本号为 0
+     */
+    SummarySnapshot getSummarySnapshot(String sessionId);
+
+    /**
+     * 在当前摘要后追加最新消息对，作为临时摘要发布（融合调用的正式摘要生成前使用）
+     * 该轮对话在 applyGeneratedSummaryAsync 写入正式摘要前一直保留在临时摘要中
+     */
+    void appendTemporaryTurn(String sessionId, String userMessage, String aiResponse);
+
+    /**
+     * 获取会话摘要状态缓存的统计信息
+     * @return 统计信息
+     */
+    String getCacheStatistics();
+
+    /**
+     * 获取摘要生成统计信息（对话轮数与 LLM 汇总次数）
+     * @return 统计信息
+     */
+    String getUpdateStatistics();
+
 
 }
\ No newline at end of file
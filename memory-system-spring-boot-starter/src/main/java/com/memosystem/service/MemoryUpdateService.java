@@ -3,6 +3,8 @@ package com.memosystem.service;
 import com.memosystem.core.memory.CandidateMemory;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 记忆更新服务接口
@@ -17,6 +19,24 @@ public interface MemoryUpdateService {
      */
     void updateMemories(String sessionId, List<CandidateMemory> candidateMemories);
 
+    /**
+     * 异步根据候选记忆列表更新记忆库
+     * 等待 LLM 决策期间不占用线程池线程，单个候选记忆失败不影响其他候选记忆
+     * @param sessionId 会话 ID
+     * @param candidateMemories 候选记忆列表
+     * @return 全部候选记忆处理完成的 Future
+     */
+    CompletableFuture<Void> updateMemoriesAsync(String sessionId, List<CandidateMemory> candidateMemories);
+
+    /**
+     * 开始一次流式记忆更新，用于流式抽取候选记忆
+     * 每条候选记忆到达时立即开始向量生成与相似记忆检索（非批量模式下直接完成整条处理），
+     * 调用 finish 后对全部候选记忆完成决策并执行
+     * @param sessionId 会话 ID
+     * @return 接收候选记忆的流式更新
+     */
+    StreamingUpdate startStreamingUpdate(String sessionId);
+
     /**
      * 添加新的记忆到记忆库
      * @param sessionId 会话 ID
@@ -44,4 +64,21 @@ public interface MemoryUpdateService {
      * @return 统计信息字符串
      */
     String getMemoryStatistics();
-}
\ No newline at end of file
+
+    /**
+     * 获取记忆更新决策统计信息（快速路径命中率等）
+     * @return 统计信息字符串
+     */
+    String getDecisionStatistics();
+
+    /**
+     * 流式记忆更新：逐条接收候选记忆，finish 后返回全部处理完成的 Future
+     */
+    interface StreamingUpdate extends Consumer<CandidateMemory> {
+        /**
+         * 候选记忆已全部到达
+         * @return 全部候选记忆处理完成的 Future，单个候选记忆失败不影响其他候选记忆
+         */
+        CompletableFuture<Void> finish();
+    }
+}
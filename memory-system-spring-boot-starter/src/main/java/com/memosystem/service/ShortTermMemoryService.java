@@ -12,6 +12,7 @@ public interface ShortTermMemoryService {
 
     /**
      * 添加消息到短期记忆
+     * 作为写穿缓存使用：消息对写入持久化存储后调用，保持会话缓存为最新状态
      * 
      * @param sessionId   会话ID
      * @param messagePair 消息对
@@ -23,7 +24,7 @@ public interface ShortTermMemoryService {
      * 
      * @param sessionId 会话ID
      * @param count     获取数量
-     * @return 最近的消息对列表
+     * @return 最近的消息对列表（不可变快照，按时间顺序）
      */
     List<MessagePair> getRecentMessages(String sessionId, int count);
 
@@ -31,7 +32,7 @@ public interface ShortTermMemoryService {
      * 获取所有短期记忆消息
      * 
      * @param sessionId 会话ID
-     * @return 所有消息对列表
+     * @return 所有消息对列表（不可变快照，按时间顺序）
      */
     List<MessagePair> getAllMessages(String sessionId);
 
@@ -43,6 +44,16 @@ public interface ShortTermMemoryService {
      */
     String buildShortTermContext(String sessionId);
 
+    /**
+     * 按 token 预算构建短期上下文字符串
+     * 从最新一轮开始填充：预算充足时保留完整对话，不足时较早的对话降级为摘要行，仍不足则丢弃
+     * 
+     * @param sessionId   会话ID
+     * @param tokenBudget token 预算（估算值）
+     * @return 格式化的短期记忆上下文，估算 token 数不超过预算
+     */
+    String buildShortTermContext(String sessionId, int tokenBudget);
+
     /**
      * 清空会话的短期记忆
      * 
@@ -57,4 +68,11 @@ public interface ShortTermMemoryService {
      * @return 消息数量
      */
     int getMessageCount(String sessionId);
+
+    /**
+     * 获取会话缓存统计信息（会话数、命中、未命中、淘汰）
+     * 
+     * @return 统计信息字符串
+     */
+    String getCacheStatistics();
 }
@@ -9,6 +9,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * 对话增强服务实现
  * 负责构建增强的提示词并获取 AI 响应
@@ -133,4 +137,20 @@ public class ConversationEnhancerServiceImpl implements ConversationEnhancerServ
             return "抱歉，我现在无法生成响应。错误信息: " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public CompletableFuture<String> getAIResponseStream(String enhancedPrompt, Consumer<String> onDelta) {
+        log.info("流式调用 LLM 获取响应 - 提示词长度: {}", enhancedPrompt.length());
+
+        // 返回原始 Future 而不是 whenComplete 的派生 Future，调用方取消时才能中止 HTTP 流
+        CompletableFuture<String> stream = llmClient.chatStream(List.of(enhancedPrompt), onDelta);
+        stream.whenComplete((response, ex) -> {
+            if (ex != null) {
+                log.error("流式调用 LLM 时出错", ex);
+            } else {
+                log.info("LLM 流式响应已完成，长度: {}", response.length());
+            }
+        });
+        return stream;
+    }
+}
@@ -1,14 +1,16 @@
 package com.memosystem.service.impl;
 
-import com.memosystem.common.model.CommonFileRepository;
+import com.memosystem.adapter.llm.LLMCallContext;
+import com.memosystem.adapter.storage.ConversationRepository;
 import com.memosystem.common.model.ParsedMessage;
 import com.memosystem.common.model.Result;
 import com.memosystem.config.MemorySystemProperties;
 import com.memosystem.core.conversation.MessagePair;
 import com.memosystem.core.memory.CandidateMemory;
+import com.memosystem.core.memory.ExtractionWithSummary;
 import com.memosystem.core.memory.MemorySimilarity;
-import com.memosystem.core.summary.GlobalSummaryEntry;
 import com.memosystem.service.*;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -50,12 +52,24 @@ public class ConversationServiceImpl implements ConversationService {
     @Autowired
     private ShortTermMemoryService shortTermMemoryService;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
     @Autowired
     @Qualifier("mem0ThreadPoolExecutor")
     private ExecutorService executorService;
 
     private static final String MESSAGES_FILE = "messages.json";
-    private static final String SUMMARY_FILE = "global_summary.json";
+
+    /**
+     * 融合调用与分层摘要互斥：融合调用每轮直接改写全局摘要，不生成分段摘要
+     */
+    @PostConstruct
+    private void checkSummaryModes() {
+        if (memoryConfig.getExtraction().isCombinedSummaryEnabled() && memoryConfig.getSummaryHierarchy().isEnabled()) {
+            log.warn("已启用分层摘要，融合调用（combined-summary-enabled）不生效，抽取与摘要更新分别调用");
+        }
+    }
 
     /**
      * 处理对话
@@ -85,7 +99,8 @@ public class ConversationServiceImpl implements ConversationService {
             // 阶段 2: 获取 AI 响应
             log.info("【阶段 2】调用 LLM 获取 AI 响应...");
             long phase2Start = System.currentTimeMillis();
-            String aiResponse = conversationEnhancerService.getAIResponse(enhancedPrompt);
+            String aiResponse = LLMCallContext.withSession(sessionId,
+                    () -> conversationEnhancerService.getAIResponse(enhancedPrompt));
             long phase2Duration = System.currentTimeMillis() - phase2Start;
             timings.put("阶段2-LLM响应", phase2Duration);
             log.info("AI 响应已获取，长度: {} 字符，耗时: {} ms", aiResponse.length(), phase2Duration);
@@ -119,6 +134,61 @@ public class ConversationServiceImpl implements ConversationService {
         }
     }
 
+    /**
+     * 流式处理对话
+     * 构建提示词 → 流式获取AI响应（增量回调） → 流结束后在后台更新系统上下文
+     * 
+     * @param sessionId   会话ID
+     * @param userMessage 用户消息
+     * @param onDelta     增量回复回调
+     * @return 以完整 AI 回复完成的 Future
+     */
+    @Override
+    public java.util.concurrent.CompletableFuture<String> processConversationStream(String sessionId,
+            String userMessage, java.util.function.Consumer<String> onDelta) {
+        log.info("========== 开始流式处理对话 ==========");
+        long totalStartTime = System.currentTimeMillis();
+
+        // CompletableFuture 的取消不会沿 thenCompose 向上传递，这里记下上游的流式调用以便一并取消；
+        // 取消先于流式调用发起时放入哨兵，之后发起的调用会立即被取消
+        java.util.concurrent.CompletableFuture<String> cancelled = new java.util.concurrent.CompletableFuture<>();
+        java.util.concurrent.atomic.AtomicReference<java.util.concurrent.CompletableFuture<String>> streamRef =
+                new java.util.concurrent.atomic.AtomicReference<>();
+        java.util.concurrent.CompletableFuture<String> responseTask = java.util.concurrent.CompletableFuture
+                .supplyAsync(() -> buildPromptWithMemories(sessionId, userMessage), executorService)
+                .thenCompose(enhancedPrompt -> {
+                    log.info("提示词构建完成，长度: {} 字符，耗时: {} ms",
+                            enhancedPrompt.length(), System.currentTimeMillis() - totalStartTime);
+                    java.util.concurrent.CompletableFuture<String> stream = LLMCallContext.withSession(sessionId,
+                            () -> conversationEnhancerService.getAIResponseStream(enhancedPrompt, onDelta));
+                    if (!streamRef.compareAndSet(null, stream)) {
+                        stream.cancel(true);
+                    }
+                    return stream;
+                });
+        responseTask.whenComplete((response, ex) -> {
+            if (responseTask.isCancelled()) {
+                java.util.concurrent.CompletableFuture<String> stream = streamRef.getAndSet(cancelled);
+                if (stream != null) {
+                    stream.cancel(true);
+                }
+            }
+        });
+
+        // 流正常结束后再更新系统上下文，不阻塞响应输出；被取消的回复不写入记忆
+        responseTask.thenComposeAsync(
+                aiResponse -> updateSystemContextAsync(sessionId, userMessage, aiResponse), executorService)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("流式对话后更新系统上下文异常", ex);
+                    } else {
+                        log.info("流式对话处理完成，总耗时: {} ms", System.currentTimeMillis() - totalStartTime);
+                    }
+                });
+
+        return responseTask;
+    }
+
     /**
      * 获取构建用户对话功能的完整的提示词（包含相似记忆的完整上下文）
      * 
@@ -139,11 +209,13 @@ public class ConversationServiceImpl implements ConversationService {
                     parsedMessage, memoryConfig.getConversationSearchTopK());
 
             // 步骤 3: 获取短期记忆上下文
-            String shortTermContext = shortTermMemoryService.buildShortTermContext(sessionId);
+            String shortTermContext = shortTermMemoryService.buildShortTermContext(sessionId,
+                    memoryConfig.getShortTermTokenBudget());
             log.debug("短期记忆: {} 轮对话", shortTermMemoryService.getMessageCount(sessionId));
 
             // 步骤 4: 获取全局上下文并构建完整的提示词
-            String globalContext = globalSummaryService.getCurrentSummary(sessionId);
+            String globalContext = globalSummaryService.buildSummaryContext(sessionId,
+                    memoryConfig.getSummaryHierarchy().getContextTokenBudget());
             String memoryContext = buildMemoryContext(relatedMemories);
 
             String enhancedPrompt = conversationEnhancerService.buildSystemInstruction(parsedMessage,
@@ -174,11 +246,13 @@ public class ConversationServiceImpl implements ConversationService {
             log.debug("检索到 {} 条相似记忆", relatedMemories.size());
 
             // 步骤 3: 获取短期记忆上下文
-            String shortTermContext = shortTermMemoryService.buildShortTermContext(sessionId);
+            String shortTermContext = shortTermMemoryService.buildShortTermContext(sessionId,
+                    memoryConfig.getShortTermTokenBudget());
             log.debug("短期记忆: {} 轮对话", shortTermMemoryService.getMessageCount(sessionId));
 
             // 步骤 4: 获取全局上下文并构建完整的提示词
-            String globalContext = globalSummaryService.getCurrentSummary(sessionId);
+            String globalContext = globalSummaryService.buildSummaryContext(sessionId,
+                    memoryConfig.getSummaryHierarchy().getContextTokenBudget());
             String memoryContext = buildMemoryContext(relatedMemories);
 
             String enhancedPrompt = conversationEnhancerService.buildSystemInstruction(
@@ -204,122 +278,152 @@ public class ConversationServiceImpl implements ConversationService {
      */
     @Override
     public Result<String> updateSystemContext(String sessionId, String userMessage, String aiResponse) {
+        return updateSystemContextAsync(sessionId, userMessage, aiResponse).join();
+    }
+
+    /**
+     * 异步更新系统上下文信息
+     * 保存消息对与临时摘要在调用线程中完成，记忆抽取、记忆库更新与全局摘要更新为非阻塞调用，
+     * 返回的 Future 总是以 Result 完成，不会以异常完成
+     * 
+     * @param sessionId   会话ID
+     * @param userMessage 用户消息
+     * @param aiResponse  AI回复内容
+     * @return 更新结果的 Future
+     */
+    @Override
+    public java.util.concurrent.CompletableFuture<Result<String>> updateSystemContextAsync(String sessionId,
+            String userMessage, String aiResponse) {
         try {
             log.debug("【开始更新系统上下文】");
             log.info("更新系统上下文 - sessionId: {}, 用户消息: {}, AI响应: {}",
                     sessionId, userMessage, aiResponse);
             // 使用Map记录各步骤耗时
-            java.util.Map<String, Long> timings = new java.util.LinkedHashMap<>();
+            java.util.Map<String, Long> timings = java.util.Collections.synchronizedMap(new java.util.LinkedHashMap<>());
             long totalStartTime = System.currentTimeMillis();
 
-            // 步骤 5: 保存消息对
+            // 步骤 5: 保存消息对（写穿短期记忆缓存）
             log.debug("【步骤 5】保存消息对到持久化存储...");
             long step5Start = System.currentTimeMillis();
             MessagePair messagePair = new MessagePair(sessionId, userMessage, aiResponse, System.currentTimeMillis());
-            CommonFileRepository.save(MESSAGES_FILE, messagePair);
+            conversationRepository.saveMessage(messagePair);
+            shortTermMemoryService.addMessage(sessionId, messagePair);
             long step5Duration = System.currentTimeMillis() - step5Start;
             timings.put("步骤5-保存消息对", step5Duration);
 
             // 步骤 6: 获取全局摘要和最近记忆
             log.debug("【步骤 6】获取全局摘要和最近记忆...");
             long step6Start = System.currentTimeMillis();
-            String globalSummary = globalSummaryService.getCurrentSummary(sessionId);
+            // 分层摘要模式下尚未汇总的分段摘要也要参与抽取，与构建提示词时使用相同的摘要上下文；
+            // 版本号先于摘要读取，融合调用据此判断生成的摘要是否基于过期内容
+            long summaryVersion = globalSummaryService.getSummarySnapshot(sessionId).getVersion();
+            String globalSummary = globalSummaryService.buildSummaryContext(sessionId,
+                    memoryConfig.getSummaryHierarchy().getContextTokenBudget());
             String recentMemories = memoryRetrieverService.getRecentMemories(sessionId, MESSAGES_FILE);
             long step6Duration = System.currentTimeMillis() - step6Start;
             timings.put("步骤6-获取上下文", step6Duration);
 
-            // 步骤 6.5：创建临时摘要（追加最新消息）
-            log.debug("【步骤 6.5】创建临时摘要（追加最新消息）...");
-            long step65Start = System.currentTimeMillis();
-            createAndSaveTemporarySummary(sessionId, userMessage, aiResponse, globalSummary);
-            long step65Duration = System.currentTimeMillis() - step65Start;
-            timings.put("步骤6.5-创建临时摘要", step65Duration);
-
             // 并行执行步骤 7 和步骤 9
             log.debug("【阶段 2】并行处理：抽取候选记忆 && 更新全局摘要...");
             long phase2Start = System.currentTimeMillis();
 
-            java.util.concurrent.CompletableFuture<List<CandidateMemory>> extractTask = java.util.concurrent.CompletableFuture
-                    .supplyAsync(() -> {
-                        log.debug("【步骤 7】从对话中抽取候选记忆...");
-                        long step7Start = System.currentTimeMillis();
-                        List<CandidateMemory> extracted = factExtractorService.extractCandidateMemories(
-                                globalSummary, recentMemories, userMessage, aiResponse);
-                        long step7Duration = System.currentTimeMillis() - step7Start;
-                        timings.put("步骤7-抽取候选记忆", step7Duration);
-                        return extracted;
-                    }, executorService);
-
-            java.util.concurrent.CompletableFuture<Void> updateSummaryTask = java.util.concurrent.CompletableFuture
-                    .runAsync(() -> {
-                        log.debug("【步骤 9】更新全局摘要...");
-                        long step9Start = System.currentTimeMillis();
-                        globalSummaryService.updateGlobalSummary(sessionId, userMessage, aiResponse);
-                        long step9Duration = System.currentTimeMillis() - step9Start;
-                        timings.put("步骤9-更新全局摘要", step9Duration);
-                    }, executorService);
-
-            List<CandidateMemory> extractedMemories = extractTask.join();
-            long phase2Duration = System.currentTimeMillis() - phase2Start;
-            timings.put("阶段2-并行处理", phase2Duration);
-
-            // 步骤 8: 更新记忆库
-            log.debug("【步骤 8】更新记忆库...");
-            long step8Start = System.currentTimeMillis();
-            memoryUpdateService.updateMemories(sessionId, extractedMemories);
-            long step8Duration = System.currentTimeMillis() - step8Start;
-            timings.put("步骤8-更新记忆库", step8Duration);
-
-            updateSummaryTask.join();
-
-            long totalDuration = System.currentTimeMillis() - totalStartTime;
-
-            // 打印汇总
-            log.debug("【耗时汇总】");
-            timings.forEach((step, duration) -> log.debug("  {}: {} ms", step, duration));
-            log.debug("  总耗时: {} ms", totalDuration);
+            // 两个 LLM 调用均为非阻塞调用，等待响应期间不占用线程池线程
+            log.debug("【步骤 7】从对话中抽取候选记忆...");
+            long step7Start = System.currentTimeMillis();
+            boolean streaming = memoryConfig.getExtraction().isStreamingEnabled();
+            // 流式抽取时，每条候选记忆一到达就开始更新记忆库（步骤 8 与步骤 7 重叠）
+            MemoryUpdateService.StreamingUpdate streamingUpdate = streaming
+                    ? memoryUpdateService.startStreamingUpdate(sessionId)
+                    : null;
+            java.util.concurrent.CompletableFuture<List<CandidateMemory>> extractTask;
+            java.util.concurrent.CompletableFuture<Void> updateSummaryTask;
+            long step9Start = System.currentTimeMillis();
+            if (useCombinedSummary()) {
+                // 融合调用：步骤 7 与步骤 9 由同一次 LLM 调用完成
+                // 步骤 6.5：创建临时摘要（追加最新消息）；非融合模式下由 updateGlobalSummaryAsync 在入队时一并发布
+                log.debug("【步骤 6.5】创建临时摘要（追加最新消息）...");
+                long step65Start = System.currentTimeMillis();
+                globalSummaryService.appendTemporaryTurn(sessionId, userMessage, aiResponse);
+                timings.put("步骤6.5-创建临时摘要", System.currentTimeMillis() - step65Start);
+
+                log.debug("【步骤 7 + 9】融合调用：抽取候选记忆并更新全局摘要...");
+                java.util.concurrent.CompletableFuture<ExtractionWithSummary> combinedTask = LLMCallContext
+                        .withSession(sessionId, () -> factExtractorService.extractWithSummaryAsync(globalSummary,
+                                recentMemories, userMessage, aiResponse, streamingUpdate));
+                extractTask = combinedTask
+                        .thenApply(ExtractionWithSummary::getFacts)
+                        .whenComplete((extracted, ex) -> timings.put("步骤7-抽取候选记忆",
+                                System.currentTimeMillis() - step7Start));
+                // 融合调用失败时仍需提交本轮对话（由备选策略追加），否则它会一直停留在临时摘要中
+                updateSummaryTask = combinedTask
+                        .handle((combined, ex) -> combined != null ? combined.getSummary() : null)
+                        .thenCompose(summary -> globalSummaryService.applyGeneratedSummaryAsync(sessionId,
+                                summary, summaryVersion, userMessage, aiResponse))
+                        .whenComplete((ignored, ex) -> timings.put("步骤9-更新全局摘要",
+                                System.currentTimeMillis() - step9Start));
+            } else {
+                extractTask = LLMCallContext
+                        .withSession(sessionId, () -> streaming
+                                ? factExtractorService.extractCandidateMemoriesStream(globalSummary, recentMemories,
+                                        userMessage, aiResponse, streamingUpdate)
+                                : factExtractorService.extractCandidateMemoriesAsync(globalSummary, recentMemories,
+                                        userMessage, aiResponse))
+                        .whenComplete((extracted, ex) -> timings.put("步骤7-抽取候选记忆",
+                                System.currentTimeMillis() - step7Start));
+
+                log.debug("【步骤 9】更新全局摘要...");
+                updateSummaryTask = globalSummaryService
+                        .updateGlobalSummaryAsync(sessionId, userMessage, aiResponse)
+                        .whenComplete((ignored, ex) -> timings.put("步骤9-更新全局摘要",
+                                System.currentTimeMillis() - step9Start));
+            }
 
-            return Result.success("系统上下文已成功更新");
+            // 步骤 8: 抽取完成后更新记忆库（流式抽取时只需等待已开始的更新完成）
+            java.util.concurrent.CompletableFuture<Void> updateMemoryTask = extractTask
+                    .thenCompose(extractedMemories -> {
+                        timings.put("阶段2-并行处理", System.currentTimeMillis() - phase2Start);
+                        log.debug("【步骤 8】更新记忆库...");
+                        long step8Start = System.currentTimeMillis();
+                        java.util.concurrent.CompletableFuture<Void> update = streaming
+                                ? streamingUpdate.finish()
+                                : memoryUpdateService.updateMemoriesAsync(sessionId, extractedMemories);
+                        return update.whenComplete((ignored, ex) -> timings.put("步骤8-更新记忆库",
+                                System.currentTimeMillis() - step8Start));
+                    });
+
+            return java.util.concurrent.CompletableFuture.allOf(updateMemoryTask, updateSummaryTask)
+                    .handle((ignored, ex) -> {
+                        if (ex != null) {
+                            log.error("【系统异常】更新系统上下文失败", ex);
+                            return Result.<String>businessError("更新系统上下文失败: " + ex.getMessage());
+                        }
+
+                        long totalDuration = System.currentTimeMillis() - totalStartTime;
+
+                        // 打印汇总
+                        log.debug("【耗时汇总】");
+                        timings.forEach((step, duration) -> log.debug("  {}: {} ms", step, duration));
+                        log.debug("  总耗时: {} ms", totalDuration);
+
+                        return Result.success("系统上下文已成功更新");
+                    });
 
         } catch (IllegalArgumentException e) {
             log.error("【参数错误】更新系统上下文失败: {}", e.getMessage());
-            return Result.badRequest("参数错误: " + e.getMessage());
+            return java.util.concurrent.CompletableFuture.completedFuture(Result.badRequest("参数错误: " + e.getMessage()));
         } catch (Exception e) {
             log.error("【系统异常】更新系统上下文失败", e);
-            return Result.businessError("更新系统上下文失败: " + e.getMessage());
+            return java.util.concurrent.CompletableFuture.completedFuture(
+                    Result.businessError("更新系统上下文失败: " + e.getMessage()));
         }
     }
 
     /**
-     * 创建并保存临时摘要（追加最新消息对）
-     * 
-     * @param sessionId
-     * @param userMessage
-     * @param aiResponse
-     * @param globalSummary
+     * 是否使用融合调用更新摘要：启用分层摘要时摘要必须经过分段，退回到分别调用
      */
-    private void createAndSaveTemporarySummary(String sessionId, String userMessage, String aiResponse,
-            String globalSummary) {
-        StringBuilder tempSummary = new StringBuilder(globalSummary);
-
-        // 添加临时标记部分
-        if (!tempSummary.toString().contains("【最近交互】")) {
-            tempSummary.append("\n\n【最近交互】\n");
-        } else {
-            tempSummary.append("\n");
-        }
-
-        // 快速追加最新的消息对（标注为临时）
-        tempSummary.append("--- 临时消息对 ---\n");
-        tempSummary.append("用户：").append(
-                userMessage.length() > 200 ? userMessage.substring(0, 200) + "..." : userMessage).append("\n");
-        tempSummary.append("AI：").append(
-                aiResponse.length() > 200 ? aiResponse.substring(0, 200) + "..." : aiResponse).append("\n");
-        // 保存临时摘要到持久化存储
-        GlobalSummaryEntry tempEntry = new GlobalSummaryEntry(sessionId, tempSummary.toString());
-        CommonFileRepository.save(SUMMARY_FILE, tempEntry);
-        log.debug("临时全局摘要已保存");
-
+    private boolean useCombinedSummary() {
+        return memoryConfig.getExtraction().isCombinedSummaryEnabled()
+                && !memoryConfig.getSummaryHierarchy().isEnabled();
     }
 
     /**
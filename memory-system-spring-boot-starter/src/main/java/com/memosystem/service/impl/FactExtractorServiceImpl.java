@@ -3,6 +3,7 @@ package com.memosystem.service.impl;
 import com.memosystem.adapter.llm.LLMClient;
 import com.memosystem.config.MemoryPrompts;
 import com.memosystem.core.memory.CandidateMemory;
+import com.memosystem.core.memory.ExtractionWithSummary;
 import com.memosystem.service.FactExtractorService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * 事实抽取服务实现
@@ -52,11 +56,7 @@ public class FactExtractorServiceImpl implements FactExtractorService {
 
         try {
             // 使用 MemoryPrompts 中的标准提示词模板
-            String extractionPrompt = MemoryPrompts.buildCompleteExtractionPrompt(
-                    globalSummary != null ? globalSummary : "",
-                    recentMemories != null ? recentMemories : "",
-                    userMessage,
-                    aiResponse);
+            String extractionPrompt = buildExtractionPrompt(globalSummary, recentMemories, userMessage, aiResponse);
 
             // 调用 LLM 进行抽取
             List<CandidateMemory> candidates = memoryLLMClient.formCandidateMemories(extractionPrompt);
@@ -75,4 +75,118 @@ public class FactExtractorServiceImpl implements FactExtractorService {
             return new ArrayList<>();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步抽取候选记忆，等待 LLM 响应期间不占用调用线程
+     */
+    @Override
+    public CompletableFuture<List<CandidateMemory>> extractCandidateMemoriesAsync(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse) {
+
+        log.debug("异步抽取候选记忆");
+
+        CompletableFuture<List<CandidateMemory>> future;
+        try {
+            String extractionPrompt = buildExtractionPrompt(globalSummary, recentMemories, userMessage, aiResponse);
+            future = memoryLLMClient.formCandidateMemoriesAsync(extractionPrompt);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((candidates, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.error("抽取候选记忆时出错: {}", cause.getMessage(), cause);
+                return new ArrayList<>();
+            }
+            log.debug("抽取完成，得到 {} 个候选记忆", candidates.size());
+            return candidates;
+        });
+    }
+
+    /**
+     * 流式抽取候选记忆，回复按增量解析，每条候选记忆闭合后立即回调
+     */
+    @Override
+    public CompletableFuture<List<CandidateMemory>> extractCandidateMemoriesStream(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse,
+            Consumer<CandidateMemory> onCandidate) {
+
+        log.debug("流式抽取候选记忆");
+
+        CompletableFuture<List<CandidateMemory>> future;
+        try {
+            String extractionPrompt = buildExtractionPrompt(globalSummary, recentMemories, userMessage, aiResponse);
+            future = memoryLLMClient.formCandidateMemoriesStream(extractionPrompt, onCandidate);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((candidates, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.error("流式抽取候选记忆时出错: {}", cause.getMessage(), cause);
+                return new ArrayList<>();
+            }
+            log.debug("流式抽取完成，得到 {} 个候选记忆", candidates.size());
+            return candidates;
+        });
+    }
+
+    /**
+     * 融合调用：抽取候选记忆并生成更新后的全局摘要，onCandidate 非 null 时流式调用
+     */
+    @Override
+    public CompletableFuture<ExtractionWithSummary> extractWithSummaryAsync(
+            String globalSummary,
+            String recentMemories,
+            String userMessage,
+            String aiResponse,
+            Consumer<CandidateMemory> onCandidate) {
+
+        log.debug("融合调用：抽取候选记忆并更新全局摘要");
+
+        CompletableFuture<ExtractionWithSummary> future;
+        try {
+            String combinedPrompt = MemoryPrompts.buildCombinedExtractionPrompt(
+                    globalSummary != null ? globalSummary : "",
+                    recentMemories != null ? recentMemories : "",
+                    userMessage,
+                    aiResponse);
+            future = onCandidate != null
+                    ? memoryLLMClient.formCandidateMemoriesWithSummaryStream(combinedPrompt, onCandidate)
+                    : memoryLLMClient.formCandidateMemoriesWithSummaryAsync(combinedPrompt);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.error("融合调用抽取候选记忆时出错: {}", cause.getMessage(), cause);
+                return new ExtractionWithSummary(new ArrayList<>(), null);
+            }
+            log.debug("融合调用完成，得到 {} 个候选记忆，{}全局摘要",
+                    result.getFacts().size(), result.getSummary() != null ? "包含" : "未包含");
+            return result;
+        });
+    }
+
+    /**
+     * 构建记忆抽取提示词
+     */
+    private String buildExtractionPrompt(String globalSummary, String recentMemories,
+            String userMessage, String aiResponse) {
+        return MemoryPrompts.buildCompleteExtractionPrompt(
+                globalSummary != null ? globalSummary : "",
+                recentMemories != null ? recentMemories : "",
+                userMessage,
+                aiResponse);
+    }
+}
@@ -1,87 +1,694 @@
 package com.memosystem.service.impl;
 
+import com.memosystem.adapter.llm.LLMCallContext;
 import com.memosystem.adapter.llm.LLMClient;
-import com.memosystem.common.model.CommonFileRepository;
+import com.memosystem.adapter.storage.ConversationRepository;
+import com.memosystem.common.util.TokenEstimator;
 import com.memosystem.config.MemoryPrompts;
+import com.memosystem.config.MemorySystemProperties;
+import com.memosystem.core.conversation.MessagePair;
 import com.memosystem.core.summary.GlobalSummaryEntry;
+import com.memosystem.core.summary.SegmentSummary;
+import com.memosystem.core.summary.SummarySnapshot;
 import com.memosystem.service.GlobalSummaryService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * 全局摘要服务实现
  * 负责生成和维护用户的全局记忆摘要
+ *
+ * 每个会话的摘要状态（最新摘要与交互次数）保存在会话状态缓存中，首次使用时从摘要存储加载；
+ * 同一会话的摘要更新按提交顺序串行执行（读取摘要 → 调用 LLM → 保存），不同会话之间完全并行
+ *
+ * 读取当前摘要直接返回缓存中的快照，不再扫描摘要存储；每次写入（正式摘要或临时摘要）都会发布版本号加一的新快照，
+ * 融合调用生成的摘要可据此检测其基于的正式摘要是否已过期
+ *
+ * 摘要合并生成：对话轮次先进入会话的待汇总队列，累计达到 maxTurns 轮、maxPendingTokens 个 token，
+ * 或第一轮入队后经过 maxDelaySeconds 秒（以先到者为准）时，才调用一次 LLM 把这些轮次一起汇总进摘要；
+ * 其间由临时摘要（追加最新消息对）覆盖尚未汇总的对话
+ *
+ * 融合调用模式：摘要由抽取候选记忆的同一次 LLM 调用生成，每轮对话各自应用，不经过待汇总队列；
+ * 应用前若已有更新的正式摘要写入（并发的其他轮次先完成），生成的摘要基于过期内容，改为对本轮对话重新汇总
+ *
+ * 增量更新模式：LLM 只返回对摘要各节条目的补丁（add / modify / remove），由本地应用到当前摘要，
+ * 输出 token 只包含变化的部分；摘要超过 maxChars 时改用一次完整重写来压缩
+ *
+ * 分层摘要模式：每批待汇总的对话先由 LLM 压缩为一条分段摘要并保存，累计 segmentsPerRollup 条尚未汇总的
+ * 分段摘要后，再把它们一起汇总进全局摘要（会话 → 分段 → 对话三级）；两级汇总都在会话的串行更新链中后台执行。
+ * 构建提示词时先放入全局摘要，再在 token 预算内由新到旧补充最近的分段摘要，提示词大小不随会话长度增长
  */
 @Service("mem0GlobalSummaryService")
 @Slf4j
 public class GlobalSummaryServiceImpl implements GlobalSummaryService {
 
-    private String currentSummary;
-    private int messageCount = 0;
+    private static final String NO_SUMMARY = "暂无全局摘要内容。";
+    private static final String TURNS_LABEL = "新增对话";
+    private static final String SEGMENTS_LABEL = "新增分段摘要";
+    private static final String SEGMENTS_HEADER = "【近期分段摘要】";
+
+    private final LongAdder turnsReceived = new LongAdder();
+    private final LongAdder regenerations = new LongAdder();
+    private final LongAdder patchUpdates = new LongAdder();
+    private final LongAdder segmentsCreated = new LongAdder();
+    private final LongAdder rollups = new LongAdder();
+
+    /**
+     * 会话摘要状态缓存：容量有上限，按访问时间过期，W-TinyLFU 准入；
+     * 有待汇总轮次或更新未完成的会话被固定（权重为 0 且不过期），避免淘汰后丢失尚未汇总的对话
+     */
+    private Cache<String, SummaryState> sessionStates;
 
     @Autowired
     @Qualifier("mem0GlobalMemoryLLMClient")
     private LLMClient llmClient;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MemorySystemProperties memoryConfig;
+
+    /**
+     * 根据配置创建会话摘要状态缓存
+     */
+    @PostConstruct
+    private void initCache() {
+        MemorySystemProperties.SummaryCache config = memoryConfig.getSummaryCache();
+        long expireNanos = Duration.ofMinutes(config.getExpireAfterAccessMinutes()).toNanos();
+        this.sessionStates = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxSessions())
+                .weigher((String sessionId, SummaryState state) -> state.pinned ? 0 : 1)
+                .expireAfter(new Expiry<String, SummaryState>() {
+                    @Override
+                    public long expireAfterCreate(String sessionId, SummaryState state, long currentTime) {
+                        return state.pinned ? Long.MAX_VALUE : expireNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String sessionId, SummaryState state, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(sessionId, state, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String sessionId, SummaryState state, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(sessionId, state, currentTime);
+                    }
+                })
+                .recordStats()
+                .build();
+        log.info("全局摘要会话状态缓存初始化完成：最大会话数={}, 访问过期={} 分钟",
+                config.getMaxSessions(), config.getExpireAfterAccessMinutes());
+    }
+
+    /**
+     * 单个会话的摘要状态
+     * summary 为最近一次正式摘要（LLM 生成或备选策略追加），与 messageCount、rolledUpTurn（已汇总进全局摘要的最后一轮）
+     * 只在该会话的串行更新链中修改；
+     * current 为读者看到的最新快照（可能是临时摘要），committedVersion 为最近一次正式摘要发布时的版本号，
+     * tail 为更新链的末尾，三者由 this 加锁写入；
+     * pending 为等待下一次汇总的对话轮次，与 pendingTokens、batch（当前批次编号，用于识别过期的定时汇总）
+     * 同样由 this 加锁保护；uncommitted 为已接收但尚未写入正式摘要的全部轮次（包括 pending 与正在汇总的批次），
+     * 以临时消息对的形式追加在正式摘要后发布，由 this 加锁读写；segments 为最近的分段摘要（最早的在前），由 this 加锁读写，
+     * unrolled 为尚未汇总进全局摘要的分段摘要，只在串行更新链中修改；
+     * pinned 表示有未写入正式摘要的轮次或更新未完成，此时缓存不淘汰该会话，由 this 加锁写入
+     */
+    private static class SummaryState {
+        private volatile String summary;
+        private volatile int messageCount;
+        private volatile int rolledUpTurn;
+        private volatile SummarySnapshot current;
+        private volatile long committedVersion;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private final List<MessagePair> pending = new ArrayList<>();
+        private final List<MessagePair> uncommitted = new ArrayList<>();
+        private int pendingTokens;
+        private long batch;
+        private boolean flushScheduled;
+        private final Deque<SegmentSummary> segments = new ArrayDeque<>();
+        private final List<SegmentSummary> unrolled = new ArrayList<>();
+        private volatile boolean pinned;
+
+        private SummaryState(String summary) {
+            this.summary = summary;
+            this.current = new SummarySnapshot(summary != null ? summary : NO_SUMMARY, 0, false);
+        }
+
+        /**
+         * 发布新快照，版本号加一（在 this 锁内调用）
+         */
+        private void publish(String text, boolean temporary) {
+            current = new SummarySnapshot(text, current.getVersion() + 1, temporary);
+            if (!temporary) {
+                committedVersion = current.getVersion();
+            }
+        }
+
+        /**
+         * 将一次更新追加到该会话的更新链末尾，前一次更新完成（无论成功与否）后才开始
+         */
+        private synchronized CompletableFuture<Void> enqueue(Supplier<CompletableFuture<Void>> update) {
+            CompletableFuture<Void> next = tail
+                    .handle((ignored, ex) -> null)
+                    .thenCompose(ignored -> {
+                        try {
+                            return update.get();
+                        } catch (RuntimeException e) {
+                            return CompletableFuture.failedFuture(e);
+                        }
+                    });
+            tail = next;
+            return next;
+        }
+    }
+
+    /**
+     * 获取会话摘要状态，未缓存时从摘要存储加载
+     */
+    private SummaryState stateFor(String sessionId) {
+        return sessionStates.get(sessionId, this::loadState);
+    }
+
+    /**
+     * 加载最新的正式摘要（跳过临时摘要）；启用分层摘要时同时加载最近的分段摘要，并从中恢复已汇总的轮数
+     * 最后一轮在摘要记录的 rolledUpTurn 之后的分段摘要尚未汇总进全局摘要，重新加入待汇总列表
+     */
+    private SummaryState loadState(String sessionId) {
+        Optional<GlobalSummaryEntry> latest = conversationRepository.findLatestSummary(sessionId);
+        SummaryState state = new SummaryState(latest.map(GlobalSummaryEntry::getGlobalSummary).orElse(null));
+        state.rolledUpTurn = latest.map(GlobalSummaryEntry::getRolledUpTurn).orElse(0);
+        MemorySystemProperties.SummaryHierarchy hierarchy = memoryConfig.getSummaryHierarchy();
+        if (hierarchy.isEnabled()) {
+            List<SegmentSummary> segments = conversationRepository.findRecentSegments(sessionId,
+                    hierarchy.getMaxSegments());
+            state.segments.addAll(segments);
+            if (!segments.isEmpty()) {
+                state.messageCount = segments.get(segments.size() - 1).getLastTurn();
+            }
+            for (SegmentSummary segment : segments) {
+                if (segment.getLastTurn() > state.rolledUpTurn) {
+                    state.unrolled.add(segment);
+                }
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public SummarySnapshot getSummarySnapshot(String sessionId) {
+        SummarySnapshot snapshot = stateFor(sessionId).current;
+        return new SummarySnapshot(snapshot.getGlobalSummary(), snapshot.getVersion(), snapshot.isTemporary());
+    }
+
+    @Override
+    public void appendTemporaryTurn(String sessionId, String userMessage, String aiResponse) {
+        SummaryState state = stateFor(sessionId);
+        synchronized (state) {
+            state.uncommitted.add(new MessagePair(sessionId, userMessage, aiResponse, System.currentTimeMillis()));
+            publishTemporary(sessionId, state);
+            refreshPin(sessionId, state);
+        }
+        log.debug("临时全局摘要已发布，会话：{}", sessionId);
+    }
+
     @Override
     public void updateGlobalSummary(String sessionId, String userMessage, String aiResponse) {
+        updateGlobalSummaryAsync(sessionId, userMessage, aiResponse).join();
+    }
 
+    /**
+     * 对话轮次进入待汇总队列，并在同一把锁内发布追加了该轮次的临时摘要，
+     * 之后无论哪一次正式摘要先完成，该轮次在被汇总前都不会从读者看到的摘要中消失
+     * 达到阈值时立即汇总，否则在 maxDelaySeconds 后汇总；未触发汇总时返回的 Future 立即完成
+     */
+    @Override
+    public CompletableFuture<Void> updateGlobalSummaryAsync(String sessionId, String userMessage, String aiResponse) {
         if (userMessage.isEmpty() && aiResponse.isEmpty()) {
             log.debug("没有新的消息对，跳过摘要更新");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        turnsReceived.increment();
+        MemorySystemProperties.SummaryDebounce debounce = memoryConfig.getSummaryDebounce();
+        SummaryState state = stateFor(sessionId);
+        synchronized (state) {
+            MessagePair turn = new MessagePair(sessionId, userMessage, aiResponse, System.currentTimeMillis());
+            state.pending.add(turn);
+            state.uncommitted.add(turn);
+            state.pendingTokens += TokenEstimator.estimate(userMessage) + TokenEstimator.estimate(aiResponse);
+            publishTemporary(sessionId, state);
+            refreshPin(sessionId, state);
+            if (!debounce.isEnabled()
+                    || state.pending.size() >= debounce.getMaxTurns()
+                    || state.pendingTokens >= debounce.getMaxPendingTokens()) {
+                return flush(sessionId, state);
+            }
+            if (!state.flushScheduled) {
+                state.flushScheduled = true;
+                long batch = state.batch;
+                CompletableFuture.delayedExecutor(debounce.getMaxDelaySeconds(), TimeUnit.SECONDS)
+                        .execute(() -> flushBatch(sessionId, state, batch));
+            }
+            log.debug("对话已加入待汇总队列，会话：{}，待汇总 {} 轮（约 {} tokens）",
+                    sessionId, state.pending.size(), state.pendingTokens);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 定时汇总：批次编号未变（期间没有因达到阈值而汇总过）时汇总当前待汇总的轮次
+     */
+    private void flushBatch(String sessionId, SummaryState state, long batch) {
+        synchronized (state) {
+            if (state.batch != batch || state.pending.isEmpty()) {
+                return;
+            }
+            flush(sessionId, state);
+        }
+    }
+
+    /**
+     * 取出待汇总的轮次，加入会话的串行更新链（在 state 锁内调用）
+     */
+    private CompletableFuture<Void> flush(String sessionId, SummaryState state) {
+        List<MessagePair> turns = new ArrayList<>(state.pending);
+        state.pending.clear();
+        state.pendingTokens = 0;
+        state.batch++;
+        state.flushScheduled = false;
+        regenerations.increment();
+        if (memoryConfig.getSummaryHierarchy().isEnabled()) {
+            return enqueue(sessionId, state, () -> summarizeSegment(sessionId, state, turns));
+        }
+        return enqueue(sessionId, state, () -> regenerate(sessionId, state, turns));
+    }
+
+    /**
+     * 将一次更新追加到会话的串行更新链；更新链未完成期间固定该会话的缓存条目
+     */
+    private CompletableFuture<Void> enqueue(String sessionId, SummaryState state,
+            Supplier<CompletableFuture<Void>> update) {
+        CompletableFuture<Void> next;
+        synchronized (state) {
+            next = state.enqueue(update);
+            refreshPin(sessionId, state);
+        }
+        next.whenComplete((ignored, ex) -> {
+            synchronized (state) {
+                refreshPin(sessionId, state);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * 按是否有未写入正式摘要的轮次或未完成的更新固定或解除固定缓存条目（在 state 锁内调用）
+     * 缓存只在写入时计算权重与过期时间，因此状态变化后把同一对象重新写入使其生效
+     */
+    private void refreshPin(String sessionId, SummaryState state) {
+        boolean busy = !state.uncommitted.isEmpty() || !state.tail.isDone();
+        if (busy != state.pinned) {
+            state.pinned = busy;
+            sessionStates.asMap().replace(sessionId, state, state);
+        }
+    }
+
+    /**
+     * 应用关闭前汇总所有会话的待汇总轮次，并等待各会话的更新链完成
+     */
+    @PreDestroy
+    private void flushPendingOnShutdown() {
+        List<CompletableFuture<Void>> tails = new ArrayList<>();
+        sessionStates.asMap().forEach((sessionId, state) -> {
+            synchronized (state) {
+                if (!state.pending.isEmpty()) {
+                    flush(sessionId, state);
+                }
+                if (!state.tail.isDone()) {
+                    tails.add(state.tail);
+                }
+            }
+        });
+        if (tails.isEmpty()) {
             return;
         }
-        String currentSummary = getCurrentSummary(sessionId);
+
+        long timeoutSeconds = memoryConfig.getSummaryDebounce().getShutdownTimeoutSeconds();
+        log.info("应用关闭，等待 {} 个会话的摘要更新完成（最多 {} 秒）", tails.size(), timeoutSeconds);
+        try {
+            CompletableFuture.allOf(tails.toArray(new CompletableFuture[0])).get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            long unfinished = tails.stream().filter(tail -> !tail.isDone()).count();
+            log.warn("等待摘要更新超时，{} 个会话的摘要更新未完成", unfinished);
+        } catch (ExecutionException e) {
+            // 各次更新自行处理失败，这里只等待完成
+            log.debug("摘要更新以异常结束：{}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待摘要更新被中断");
+        }
+    }
+
+    /**
+     * 调用 LLM 把若干轮对话汇总进摘要（增量补丁或完整重写），失败时使用备选策略追加
+     */
+    private CompletableFuture<Void> regenerate(String sessionId, SummaryState state, List<MessagePair> turns) {
+        boolean patchMode = usePatch(state);
+        CompletableFuture<String> response;
         try {
-            // 构建更新提示词
-            String updatePrompt = buildGlobalSummaryUpdatePrompt(
-                    currentSummary,
-                    userMessage,
-                    aiResponse,
-                    messageCount);
+            String content = formatTurns(turns);
+            String updatePrompt = patchMode
+                    ? preparePatchPrompt(state, TURNS_LABEL, content)
+                    : prepareUpdatePrompt(state, TURNS_LABEL, content);
+            response = LLMCallContext.withSession(sessionId, () -> llmClient.generateResponseAsync(updatePrompt));
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
 
-            log.debug("调用 LLM 更新全局摘要");
+        return response.handle((summary, ex) -> {
+            try {
+                if (ex == null) {
+                    applySummary(sessionId, state, patchMode ? applyPatch(state, summary) : summary, turns);
+                    return null;
+                }
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("使用备选策略更新全局摘要：{}", cause.getMessage());
+            } catch (Exception e) {
+                log.warn("使用备选策略更新全局摘要：{}", e.getMessage());
+            }
+            // 备选策略：简单追加新的对话
+            appendToSummary(sessionId, state, turns);
+            return null;
+        });
+    }
 
-            // 更新摘要
-            this.currentSummary = llmClient.generateResponse(updatePrompt);
-            this.messageCount++;
+    /**
+     * 调用 LLM 把一批对话压缩为分段摘要（失败时截取对话原文），累计到 segmentsPerRollup 条后汇总进全局摘要
+     */
+    private CompletableFuture<Void> summarizeSegment(String sessionId, SummaryState state, List<MessagePair> turns) {
+        MemorySystemProperties.SummaryHierarchy hierarchy = memoryConfig.getSummaryHierarchy();
+        CompletableFuture<String> response;
+        try {
+            String segmentPrompt = buildSegmentPrompt(state, turns, hierarchy.getSegmentMaxChars());
+            log.debug("调用 LLM 生成分段摘要，压缩 {} 轮对话", turns.size());
+            response = LLMCallContext.withSession(sessionId, () -> llmClient.generateResponseAsync(segmentPrompt));
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
 
-            // 报错更新后的摘要到持久化存储
-            GlobalSummaryEntry summaryEntry = new GlobalSummaryEntry(sessionId, this.currentSummary);
-            CommonFileRepository.save("global_summary.json", summaryEntry);
-            log.debug("全局摘要更新完成，交互次数：{}", messageCount);
+        return response.handle((text, ex) -> {
+            String segment = text;
+            if (ex != null || segment == null || segment.isBlank()) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("使用备选策略生成分段摘要：{}", cause != null ? cause.getMessage() : "LLM 返回为空");
+                // 备选策略：截取对话原文
+                segment = excerptTurns(turns);
+            }
+            addSegment(sessionId, state, segment.strip(), turns);
+            return null;
+        }).thenCompose(ignored -> state.unrolled.size() >= hierarchy.getSegmentsPerRollup()
+                ? rollup(sessionId, state)
+                : CompletableFuture.completedFuture(null));
+    }
 
+    /**
+     * 保存分段摘要并重新发布快照：分段覆盖的轮次不再以临时消息对的形式追加在摘要后
+     */
+    private void addSegment(String sessionId, SummaryState state, String text, List<MessagePair> turns) {
+        SegmentSummary segment = new SegmentSummary(sessionId, state.messageCount + 1,
+                state.messageCount + turns.size(), text, System.currentTimeMillis());
+        try {
+            conversationRepository.saveSegment(segment);
         } catch (Exception e) {
-            log.warn("使用备选策略更新全局摘要：{}", e.getMessage());
-            // 备选策略：简单追加新的对话
-            appendToSummary(sessionId, userMessage, aiResponse);
+            log.warn("保存分段摘要失败，仅保留在内存中：{}", e.getMessage());
+        }
+        state.unrolled.add(segment);
+        synchronized (state) {
+            state.segments.addLast(segment);
+            while (state.segments.size() > Math.max(1, memoryConfig.getSummaryHierarchy().getMaxSegments())) {
+                state.segments.removeFirst();
+            }
         }
+        segmentsCreated.increment();
+        commit(sessionId, state, state.summary, turns);
+        log.debug("分段摘要已生成，会话：{}，第 {}-{} 轮，待汇总分段 {} 条",
+                sessionId, segment.getFirstTurn(), segment.getLastTurn(), state.unrolled.size());
     }
 
     /**
-     * 备选策略：直接追加新的对话到摘要中
+     * 调用 LLM 把尚未汇总的分段摘要汇总进全局摘要（增量补丁或完整重写）
+     * 失败时保持全局摘要不变，这些分段摘要在下一次生成分段摘要后再参与汇总
      */
-    private void appendToSummary(String sessionId, String userMessage, String aiResponse) {
-        StringBuilder summary = new StringBuilder(this.currentSummary != null ? this.currentSummary : "");
+    private CompletableFuture<Void> rollup(String sessionId, SummaryState state) {
+        List<SegmentSummary> segments = new ArrayList<>(state.unrolled);
+        boolean patchMode = usePatch(state);
+        CompletableFuture<String> response;
+        try {
+            String content = formatSegments(segments);
+            String updatePrompt = patchMode
+                    ? preparePatchPrompt(state, SEGMENTS_LABEL, content)
+                    : prepareUpdatePrompt(state, SEGMENTS_LABEL, content);
+            response = LLMCallContext.withSession(sessionId, () -> llmClient.generateResponseAsync(updatePrompt));
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        return response.handle((summary, ex) -> {
+            try {
+                if (ex == null) {
+                    String updated = patchMode ? applyPatch(state, summary) : summary;
+                    state.unrolled.removeAll(segments);
+                    state.rolledUpTurn = segments.get(segments.size() - 1).getLastTurn();
+                    rollups.increment();
+                    applySummary(sessionId, state, updated, List.of());
+                    return null;
+                }
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("分段摘要汇总失败，稍后重试：{}", cause.getMessage());
+            } catch (Exception e) {
+                log.warn("分段摘要汇总失败，稍后重试：{}", e.getMessage());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> applyGeneratedSummaryAsync(String sessionId, String summary, long baseVersion,
+            String userMessage, String aiResponse) {
+        SummaryState state = stateFor(sessionId);
+        return enqueue(sessionId, state, () -> {
+            List<MessagePair> turns = List.of(takeTemporaryTurn(sessionId, state, userMessage, aiResponse));
+            if (summary == null || summary.isBlank()) {
+                log.warn("融合调用未返回全局摘要，使用备选策略更新");
+                // 备选策略：简单追加新的对话
+                appendToSummary(sessionId, state, turns);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (state.committedVersion > baseVersion) {
+                // 生成期间其他轮次已写入正式摘要，直接应用会覆盖它们，改为基于最新摘要重新汇总本轮
+                log.debug("融合调用基于的摘要版本 {} 已过期（正式摘要版本 {}），重新汇总本轮对话",
+                        baseVersion, state.committedVersion);
+                regenerations.increment();
+                return regenerate(sessionId, state, turns);
+            }
+            applySummary(sessionId, state, summary, turns);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 找到 appendTemporaryTurn 登记的同一轮对话，提交后才能从临时摘要中移除；未登记时新建
+     */
+    private MessagePair takeTemporaryTurn(String sessionId, SummaryState state, String userMessage,
+            String aiResponse) {
+        synchronized (state) {
+            for (MessagePair turn : state.uncommitted) {
+                if (turn.getUserMessage().equals(userMessage) && turn.getAiResponse().equals(aiResponse)) {
+                    return turn;
+                }
+            }
+        }
+        return new MessagePair(sessionId, userMessage, aiResponse, System.currentTimeMillis());
+    }
+
+    /**
+     * 读取会话当前摘要并构建更新提示词
+     */
+    private String prepareUpdatePrompt(SummaryState state, String label, String content) {
+        String currentSummary = state.summary != null ? state.summary : NO_SUMMARY;
+        log.debug("调用 LLM 更新全局摘要，汇总{}", label);
+        return buildGlobalSummaryUpdatePrompt(currentSummary, label, content, state.messageCount);
+    }
+
+    /**
+     * 是否使用增量补丁：启用增量更新且当前摘要未超过 maxChars（超过时完整重写一次以压缩摘要）
+     */
+    private boolean usePatch(SummaryState state) {
+        MemorySystemProperties.SummaryPatch config = memoryConfig.getSummaryPatch();
+        if (!config.isEnabled()) {
+            return false;
+        }
+        if (state.summary != null && state.summary.length() > config.getMaxChars()) {
+            log.debug("全局摘要长度 {} 超过 {}，本次完整重写", state.summary.length(), config.getMaxChars());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 构建增量更新提示词：当前摘要按节编号渲染，LLM 按编号引用条目
+     */
+    private String preparePatchPrompt(SummaryState state, String label, String content) {
+        String currentSummary = SummaryDocument.parse(state.summary).render();
+        log.debug("调用 LLM 增量更新全局摘要，汇总{}", label);
+        return String.format("""
+                %s
+
+                【当前全局摘要】
+                %s
+
+                【%s】（时间戳：%s）
+                %s
+                """,
+                MemoryPrompts.SUMMARY_PATCH_INSTRUCTION,
+                currentSummary.isEmpty() ? "（暂无摘要）" : currentSummary,
+                label,
+                LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME),
+                content);
+    }
+
+    /**
+     * 将 LLM 返回的补丁应用到当前摘要，补丁无法解析时抛出（由调用方使用备选策略）
+     */
+    private String applyPatch(SummaryState state, String response) {
+        SummaryDocument document = SummaryDocument.parse(state.summary);
+        int applied = document.apply(response);
+        patchUpdates.increment();
+        log.debug("全局摘要补丁已应用 {} 项修改", applied);
+        String summary = document.render();
+        return summary.isEmpty() ? NO_SUMMARY : summary;
+    }
+
+    /**
+     * 记录 LLM 生成的新摘要并保存到持久化存储
+     */
+    private void applySummary(String sessionId, SummaryState state, String summary, List<MessagePair> turns) {
+        commit(sessionId, state, summary, turns);
+        log.debug("全局摘要更新完成，会话：{}，交互次数：{}", sessionId, state.messageCount);
+    }
+
+    /**
+     * 备选策略：直接追加新的对话到该会话的摘要中
+     */
+    private void appendToSummary(String sessionId, SummaryState state, List<MessagePair> turns) {
+        StringBuilder summary = new StringBuilder(state.summary != null ? state.summary : "");
 
         if (!summary.toString().contains("【交互历史】")) {
             summary.append("\n【交互历史】\n");
         }
 
-        summary.append("\n--- 消息 ").append(messageCount + 1).append(" ---\n");
-        summary.append("用户: ").append(userMessage.substring(0, Math.min(100, userMessage.length()))).append("\n");
-        summary.append("AI: ").append(aiResponse.substring(0, Math.min(100, aiResponse.length()))).append("\n");
+        int index = state.messageCount;
+        for (MessagePair turn : turns) {
+            String userMessage = turn.getUserMessage();
+            String aiResponse = turn.getAiResponse();
+            summary.append("\n--- 消息 ").append(++index).append(" ---\n");
+            summary.append("用户: ").append(userMessage.substring(0, Math.min(100, userMessage.length()))).append("\n");
+            summary.append("AI: ").append(aiResponse.substring(0, Math.min(100, aiResponse.length()))).append("\n");
+        }
+
+        commit(sessionId, state, summary.toString(), turns);
+    }
+
+    /**
+     * 写入正式摘要：保存到持久化存储，并发布新版本的快照（覆盖此前的临时摘要）
+     * turns 为本次汇总进摘要的轮次；其余尚未写入正式摘要的轮次（包括正在汇总的其他批次）
+     * 再以临时消息对的形式追加到新摘要后发布，避免其从摘要中消失
+     */
+    private void commit(String sessionId, SummaryState state, String summary, List<MessagePair> turns) {
+        synchronized (state) {
+            state.summary = summary;
+            state.messageCount += turns.size();
+            // 按引用移除，内容相同的两轮对话互不影响
+            for (MessagePair turn : turns) {
+                state.uncommitted.removeIf(candidate -> candidate == turn);
+            }
+            // 分层摘要模式下生成第一次全局摘要之前 summary 为 null，只发布默认提示文本
+            String committed = summary != null ? summary : NO_SUMMARY;
+            if (summary != null) {
+                conversationRepository.saveSummary(new GlobalSummaryEntry(sessionId, summary, state.rolledUpTurn));
+            }
+            state.publish(committed, false);
+
+            if (!state.uncommitted.isEmpty()) {
+                publishTemporary(sessionId, state);
+            }
+        }
+    }
 
-        this.currentSummary = summary.toString();
-        this.messageCount++;
-        // 报错更新后的摘要到持久化存储
-        GlobalSummaryEntry summaryEntry = new GlobalSummaryEntry(sessionId, this.currentSummary);
-        CommonFileRepository.save("global_summary.json", summaryEntry);
+    /**
+     * 把尚未写入正式摘要的轮次以临时消息对的形式追加到正式摘要后，发布并保存为临时摘要（在 state 锁内调用）
+     * 临时摘要只用于正式摘要生成前的读取，保存失败时只记录日志
+     */
+    private void publishTemporary(String sessionId, SummaryState state) {
+        String tempSummary = state.summary != null ? state.summary : NO_SUMMARY;
+        for (MessagePair turn : state.uncommitted) {
+            tempSummary = buildTemporarySummary(tempSummary, turn.getUserMessage(), turn.getAiResponse());
+        }
+        state.publish(tempSummary, true);
+        try {
+            conversationRepository.saveSummary(
+                    new GlobalSummaryEntry(sessionId, tempSummary, state.rolledUpTurn, true));
+        } catch (Exception e) {
+            log.warn("保存临时全局摘要失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在全局摘要后追加最新的消息对（标注为临时），供正式摘要生成前使用
+     */
+    private static String buildTemporarySummary(String globalSummary, String userMessage, String aiResponse) {
+        StringBuilder tempSummary = new StringBuilder(globalSummary);
+
+        // 添加临时标记部分
+        if (!tempSummary.toString().contains("【最近交互】")) {
+            tempSummary.append("\n\n【最近交互】\n");
+        } else {
+            tempSummary.append("\n");
+        }
+
+        // 快速追加最新的消息对（标注为临时）
+        tempSummary.append("--- 临时消息对 ---\n");
+        tempSummary.append("用户：").append(
+                userMessage.length() > 200 ? userMessage.substring(0, 200) + "..." : userMessage).append("\n");
+        tempSummary.append("AI：").append(
+                aiResponse.length() > 200 ? aiResponse.substring(0, 200) + "..." : aiResponse).append("\n");
+        return tempSummary.toString();
     }
 
     /**
@@ -89,8 +696,8 @@ public class GlobalSummaryServiceImpl implements GlobalSummaryService {
      */
     private String buildGlobalSummaryUpdatePrompt(
             String previousSummary,
-            String userMessage,
-            String aiResponse,
+            String label,
+            String content,
             int messageCount) {
 
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
@@ -105,13 +712,9 @@ public class GlobalSummaryServiceImpl implements GlobalSummaryService {
                 %s
 
                 ═════════════════════════════════════════════════════════════════════════════════
-                📋 新增对话（时间戳：%s）：
+                📋 %s（时间戳：%s）：
                 ═════════════════════════════════════════════════════════════════════════════════
 
-                【用户消息】
-                %s
-
-                【AI 响应】
                 %s
 
                 ═════════════════════════════════════════════════════════════════════════════════
@@ -121,7 +724,7 @@ public class GlobalSummaryServiceImpl implements GlobalSummaryService {
                 请根据上述过程性记忆系统提示词，基于以下信息生成更新后的全局摘要：
 
                 1. 保留当前全局摘要中的所有重要信息
-                2. 融合新增对话中的关键信息
+                2. 融合%s中的关键信息
                 3. 按照过程性记忆的结构来组织摘要
                 4. 确保摘要逻辑清晰、层次分明
                 5. 摘要长度保持在 500-1000 字符范围内
@@ -132,15 +735,136 @@ public class GlobalSummaryServiceImpl implements GlobalSummaryService {
                 MemoryPrompts.PROCEDURAL_MEMORY_SYSTEM_PROMPT,
                 messageCount + 1,
                 previousSummary,
+                label,
                 timestamp,
-                userMessage,
-                aiResponse);
+                content,
+                label);
+    }
+
+    /**
+     * 构建分段摘要提示词：当前全局摘要仅作为背景，避免分段摘要重复已有信息
+     */
+    private String buildSegmentPrompt(SummaryState state, List<MessagePair> turns, int maxChars) {
+        return String.format("""
+                %s
+                【全局摘要】
+                %s
+
+                【对话】（第 %d-%d 轮）
+                %s
+                """,
+                String.format(MemoryPrompts.SEGMENT_SUMMARY_INSTRUCTION, maxChars),
+                state.summary != null ? state.summary : NO_SUMMARY,
+                state.messageCount + 1,
+                state.messageCount + turns.size(),
+                formatTurns(turns));
+    }
+
+    /**
+     * 备选策略：截取每轮对话的开头作为分段摘要
+     */
+    private static String excerptTurns(List<MessagePair> turns) {
+        StringBuilder excerpt = new StringBuilder();
+        for (MessagePair turn : turns) {
+            String userMessage = turn.getUserMessage();
+            String aiResponse = turn.getAiResponse();
+            excerpt.append("用户: ").append(userMessage, 0, Math.min(100, userMessage.length())).append("\n");
+            excerpt.append("AI: ").append(aiResponse, 0, Math.min(100, aiResponse.length())).append("\n");
+        }
+        return excerpt.toString();
+    }
+
+    /**
+     * 格式化分段摘要，每条标注覆盖的轮次
+     */
+    private static String formatSegments(List<SegmentSummary> segments) {
+        StringBuilder content = new StringBuilder();
+        for (SegmentSummary segment : segments) {
+            content.append(formatSegment(segment)).append("\n");
+        }
+        return content.toString().trim();
+    }
+
+    private static String formatSegment(SegmentSummary segment) {
+        return String.format("（第 %d-%d 轮）%s", segment.getFirstTurn(), segment.getLastTurn(), segment.getSummary());
+    }
+
+    /**
+     * 格式化待汇总的对话，多轮对话一起汇总时逐轮标注序号
+     */
+    private static String formatTurns(List<MessagePair> turns) {
+        StringBuilder conversation = new StringBuilder();
+        for (int i = 0; i < turns.size(); i++) {
+            MessagePair turn = turns.get(i);
+            if (turns.size() > 1) {
+                conversation.append("（第 ").append(i + 1).append(" 轮）\n");
+            }
+            conversation.append("【用户消息】\n").append(turn.getUserMessage()).append("\n\n");
+            conversation.append("【AI 响应】\n").append(turn.getAiResponse()).append("\n\n");
+        }
+        return conversation.toString().trim();
+    }
+
+    @Override
+    public String getCacheStatistics() {
+        CacheStats stats = sessionStates.stats();
+        return String.format("会话数: %d, 命中: %d, 未命中: %d, 命中率: %.2f%%, 淘汰: %d",
+                sessionStates.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate() * 100,
+                stats.evictionCount());
+    }
+
+    @Override
+    public String getUpdateStatistics() {
+        long turns = turnsReceived.sum();
+        long calls = regenerations.sum();
+        return String.format("对话 %d 轮, 摘要生成 %d 次（增量补丁 %d 次）, 平均每次汇总 %.1f 轮, "
+                        + "分段摘要 %d 条（汇总进全局摘要 %d 次）",
+                turns, calls, patchUpdates.sum(), calls == 0 ? 0.0 : (double) turns / calls,
+                segmentsCreated.sum(), rollups.sum());
     }
 
     @Override
     public String getCurrentSummary(String sessionId) {
-        Optional<GlobalSummaryEntry> currentSummary = CommonFileRepository.loadLastContent(sessionId,
-                "global_summary.json", GlobalSummaryEntry.class);
-        return currentSummary.map(GlobalSummaryEntry::getGlobalSummary).orElse("暂无全局摘要内容。");
+        return buildSummaryContext(sessionId, memoryConfig.getSummaryHierarchy().getContextTokenBudget());
+    }
+
+    /**
+     * 未启用分层摘要时返回当前摘要；启用时先放入全局摘要（超出预算时截断），
+     * 再由新到旧补充放得下的分段摘要，按轮次顺序附在全局摘要之后
+     */
+    @Override
+    public String buildSummaryContext(String sessionId, int tokenBudget) {
+        SummaryState state = stateFor(sessionId);
+        String summary = state.current.getGlobalSummary();
+        if (!memoryConfig.getSummaryHierarchy().isEnabled()) {
+            return summary;
+        }
+
+        int remaining = tokenBudget - TokenEstimator.estimate(summary) - TokenEstimator.estimate(SEGMENTS_HEADER);
+        if (remaining <= 0) {
+            return TokenEstimator.truncate(summary, tokenBudget);
+        }
+
+        List<SegmentSummary> segments;
+        synchronized (state) {
+            segments = new ArrayList<>(state.segments);
+        }
+        Deque<String> selected = new ArrayDeque<>();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            String line = formatSegment(segments.get(i));
+            int tokens = TokenEstimator.estimate(line);
+            if (tokens > remaining) {
+                break;
+            }
+            selected.addFirst(line);
+            remaining -= tokens;
+        }
+        if (selected.isEmpty()) {
+            return summary;
+        }
+        return summary + "\n\n" + SEGMENTS_HEADER + "\n" + String.join("\n", selected);
     }
 }
\ No newline at end of file
@@ -1,27 +1,20 @@
 package com.memosystem.service.impl;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.memosystem.adapter.storage.QdrantLocalClient;
+import com.memosystem.adapter.storage.ConversationRepository;
 import com.memosystem.common.model.ParsedMessage;
 import com.memosystem.config.MemorySystemProperties;
 import com.memosystem.core.conversation.MessagePair;
 import com.memosystem.core.memory.MemorySimilarity;
 import com.memosystem.service.EmbeddingService;
 import com.memosystem.service.MemoryRetrieverService;
+import com.memosystem.service.ShortTermMemoryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * 记忆检索服务实现
@@ -36,7 +29,10 @@ public class MemoryRetrieverServiceImpl implements MemoryRetrieverService {
     private QdrantLocalClient qdrantLocalClient;
     @Autowired
     private MemorySystemProperties memoryConfig;
-    private static final Gson GSON = new Gson();
+    @Autowired
+    private ConversationRepository conversationRepository;
+    @Autowired
+    private ShortTermMemoryService shortTermMemoryService;
 
     /**
      * 检索与用户消息相似的记忆
@@ -93,53 +89,35 @@ public class MemoryRetrieverServiceImpl implements MemoryRetrieverService {
 
     /**
      * 获取最近的消息 Top N
+     * 优先读取短期记忆中的会话缓存，未命中时由短期记忆从会话历史存储做尾部读取并回填；
+     * 超出短期记忆容量的请求直接读取会话历史存储
      * 
      * @param sessionId 会话 ID
-     * @param fileName  消息文件名
+     * @param fileName  消息文件名（保留参数以兼容旧接口，实际读取短期记忆 / 会话历史存储）
      * @param limit     消息数量限制
      * @return
      */
     @Override
     public String getRecentMemories(String sessionId, String fileName, int limit) {
-
-        Path path = Paths.get(fileName);
-        if (!Files.exists(path)) {
-            log.warn("消息文件不存在: {}", fileName);
+        List<MessagePair> messagePairList = limit <= memoryConfig.getShortTermMemorySize()
+                ? shortTermMemoryService.getRecentMessages(sessionId, limit)
+                : conversationRepository.findRecentMessages(sessionId, limit);
+        if (messagePairList.isEmpty()) {
             return "";
         }
 
-        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-            List<MessagePair> messages = GSON.fromJson(
-                    reader,
-                    new TypeToken<List<MessagePair>>() {
-                    }.getType());
-
-            if (messages == null || messages.isEmpty()) {
-                return "";
-            }
-            // 过滤出指定 sessionId 的消息
-            List<MessagePair> messagePairList = messages.stream().filter(msg -> msg.getSessionId().equals(sessionId))
-                    .collect(Collectors.toCollection(ArrayList::new));
-            // 按时间戳排序（从新到旧）
-            messagePairList.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
-
-            // 取最近的 N 条
-            StringBuilder result = new StringBuilder();
-            int count = Math.min(limit, messagePairList.size());
-            for (int i = 0; i < count; i++) {
-                MessagePair msg = messagePairList.get(i);
-                result.append(String.format("【消息 %d】\n", i + 1));
-                result.append("用户: ").append(msg.getUserMessage()).append("\n");
-                result.append("AI: ").append(msg.getAiResponse()).append("\n");
-                result.append("时间: ").append(msg.getTimestamp()).append("\n");
-                result.append("\n");
-            }
-
-            return result.toString();
-
-        } catch (IOException e) {
-            log.error("读取消息文件失败: {}", fileName, e);
-            return "";
+        // 列表按时间顺序排列，倒序取最近的 N 条（从新到旧）
+        StringBuilder result = new StringBuilder();
+        int count = Math.min(limit, messagePairList.size());
+        for (int i = 0; i < count; i++) {
+            MessagePair msg = messagePairList.get(messagePairList.size() - 1 - i);
+            result.append(String.format("【消息 %d】\n", i + 1));
+            result.append("用户: ").append(msg.getUserMessage()).append("\n");
+            result.append("AI: ").append(msg.getAiResponse()).append("\n");
+            result.append("时间: ").append(msg.getTimestamp()).append("\n");
+            result.append("\n");
         }
+
+        return result.toString();
     }
 }
\ No newline at end of file
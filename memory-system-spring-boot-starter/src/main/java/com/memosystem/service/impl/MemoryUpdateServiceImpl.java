@@ -1,6 +1,7 @@
 package com.memosystem.service.impl;
 
 import com.memosystem.adapter.storage.QdrantLocalClient;
+import com.memosystem.config.MemorySystemProperties;
 import com.memosystem.core.conversation.MessagePair;
 import com.memosystem.core.memory.CandidateMemory;
 import com.memosystem.service.EmbeddingService;
@@ -10,13 +11,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /**
  * 记忆更新服务实现
@@ -39,64 +40,183 @@ public class MemoryUpdateServiceImpl implements MemoryUpdateService {
     @Autowired
     @Qualifier("mem0ThreadPoolExecutor")
     private ThreadPoolExecutor executor;
+    @Autowired
+    private MemorySystemProperties memoryConfig;
 
     /**
      * 根据候选记忆列表并行更新记忆库
-     * 使用自定义线程池实现并行处理
+     * 同步等待异步更新完成
      * 
      * @param sessionId         会话ID
      * @param candidateMemories 候选记忆列表
      */
     @Override
     public void updateMemories(String sessionId, List<CandidateMemory> candidateMemories) {
+        try {
+            updateMemoriesAsync(sessionId, candidateMemories).join();
+        } catch (Exception e) {
+            log.error("并行处理候选记忆异常", e);
+        }
+    }
+
+    /**
+     * 根据候选记忆列表异步并行更新记忆库
+     * 向量检索与数据库操作在自定义线程池中执行，LLM 决策为非阻塞调用
+     * 
+     * @param sessionId         会话ID
+     * @param candidateMemories 候选记忆列表
+     */
+    @Override
+    public CompletableFuture<Void> updateMemoriesAsync(String sessionId, List<CandidateMemory> candidateMemories) {
         if (candidateMemories == null || candidateMemories.isEmpty()) {
             log.debug("没有候选记忆需要处理");
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        MemorySystemProperties.Decision decisionConfig = memoryConfig.getDecision();
+        if (decisionConfig.isBatchEnabled() && candidateMemories.size() > 1) {
+            return updateMemoriesInBatches(sessionId, candidateMemories, Math.max(1, decisionConfig.getMaxBatchSize()));
         }
 
         log.debug("========== 开始并行处理 {} 个候选记忆 ==========", candidateMemories.size());
+        long totalStartTime = System.currentTimeMillis();
+        int total = candidateMemories.size();
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            int index = i;
+            CandidateMemory memory = candidateMemories.get(i);
+            long candidateStartTime = System.currentTimeMillis();
+
+            CompletableFuture<Void> task;
+            try {
+                task = messageUpdateStage.processSingleCandidateAsync(sessionId, memory, executor);
+            } catch (Exception e) {
+                task = CompletableFuture.failedFuture(e);
+            }
+
+            tasks.add(task.<Void>handle((ignored, ex) -> {
+                long candidateDuration = System.currentTimeMillis() - candidateStartTime;
+                if (ex != null) {
+                    log.error("候选记忆 {}/{} 处理异常，耗时：{}ms，事实：{}",
+                            index + 1, total, candidateDuration, memory.getFact(), ex);
+                } else {
+                    log.debug("候选记忆 {}/{} 处理完成，耗时：{}ms", index + 1, total, candidateDuration);
+                }
+                return null;
+            }));
+        }
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]))
+                .thenRun(() -> log.debug("========== {} 个候选记忆处理完成，总耗时：{}ms ==========",
+                        total, System.currentTimeMillis() - totalStartTime));
+    }
 
-        // 使用Map记录各候选记忆的耗时
-        Map<Integer, Long> timings = new LinkedHashMap<>();
+    /**
+     * 开始一次流式记忆更新
+     * 批量模式下每条候选记忆到达后立即生成向量并检索相似记忆，finish 后按批次合并决策；
+     * 非批量模式下每条候选记忆到达后直接完成整条处理
+     */
+    @Override
+    public StreamingUpdate startStreamingUpdate(String sessionId) {
+        MemorySystemProperties.Decision decisionConfig = memoryConfig.getDecision();
+        boolean batch = decisionConfig.isBatchEnabled();
+        int batchSize = Math.max(1, decisionConfig.getMaxBatchSize());
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<MessageUpdateStage.DecisionContext>> prepared =
+                Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> processed = Collections.synchronizedList(new ArrayList<>());
+
+        return new StreamingUpdate() {
+            @Override
+            public void accept(CandidateMemory memory) {
+                log.debug("流式候选记忆到达，开始处理 - 事实: {}", memory.getFact());
+                if (batch) {
+                    prepared.add(messageUpdateStage.prepareCandidateAsync(sessionId, memory, executor)
+                            .exceptionally(ex -> {
+                                log.error("候选记忆准备异常，事实：{}", memory.getFact(), ex);
+                                return null;
+                            }));
+                } else {
+                    processed.add(messageUpdateStage.processSingleCandidateAsync(sessionId, memory, executor)
+                            .exceptionally(ex -> {
+                                log.error("候选记忆处理异常，事实：{}", memory.getFact(), ex);
+                                return null;
+                            }));
+                }
+            }
+
+            @Override
+            public CompletableFuture<Void> finish() {
+                CompletableFuture<Void> done;
+                if (batch) {
+                    List<CompletableFuture<MessageUpdateStage.DecisionContext>> snapshot;
+                    synchronized (prepared) {
+                        snapshot = new ArrayList<>(prepared);
+                    }
+                    done = CompletableFuture.allOf(snapshot.toArray(new CompletableFuture[0]))
+                            .thenCompose(ignored -> decidePreparedInBatches(sessionId,
+                                    snapshot.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList(),
+                                    batchSize));
+                } else {
+                    synchronized (processed) {
+                        done = CompletableFuture.allOf(processed.toArray(new CompletableFuture[0]));
+                    }
+                }
+                return done.thenRun(() -> log.debug("========== 流式记忆更新完成，候选记忆数：{}，总耗时：{}ms ==========",
+                        batch ? prepared.size() : processed.size(), System.currentTimeMillis() - startTime));
+            }
+        };
+    }
+
+    /**
+     * 对流式更新中已准备好的候选记忆按批次合并决策，各批次并行执行
+     */
+    private CompletableFuture<Void> decidePreparedInBatches(String sessionId,
+            List<MessageUpdateStage.DecisionContext> contexts, int batchSize) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < contexts.size(); from += batchSize) {
+            List<MessageUpdateStage.DecisionContext> batch = contexts.subList(from,
+                    Math.min(from + batchSize, contexts.size()));
+            tasks.add(messageUpdateStage.decideAndApplyBatchAsync(sessionId, batch, executor)
+                    .exceptionally(ex -> {
+                        log.error("候选记忆批次处理异常，批次大小：{}", batch.size(), ex);
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * 批量决策：按批次大小拆分候选记忆，每批只发起一次 LLM 决策调用，各批次并行执行
+     */
+    private CompletableFuture<Void> updateMemoriesInBatches(String sessionId, List<CandidateMemory> candidateMemories,
+            int batchSize) {
+        log.debug("========== 开始批量处理 {} 个候选记忆，批次大小：{} ==========", candidateMemories.size(), batchSize);
         long totalStartTime = System.currentTimeMillis();
-        Map<Integer, String> memoryFacts = new LinkedHashMap<>();
 
-        try {
-            List<CompletableFuture<Void>> tasks = candidateMemories.stream()
-                    .map((memory) -> {
-                        int index = candidateMemories.indexOf(memory);
-                        memoryFacts.put(index, memory.getFact());
-
-                        return CompletableFuture.runAsync(() -> {
-                            long candidateStartTime = System.currentTimeMillis();
-                            try {
-                                log.debug("【线程池处理 {}/{}】线程：{}，事实：{}",
-                                        index + 1, candidateMemories.size(),
-                                        Thread.currentThread().getName(),
-                                        memory.getFact());
-
-                                messageUpdateStage.processSingleCandidate(sessionId, memory);
-
-                                long candidateDuration = System.currentTimeMillis() - candidateStartTime;
-                                timings.put(index, candidateDuration);
-                                log.debug("候选记忆 {}/{} 处理完成，耗时：{}ms",
-                                        index + 1, candidateMemories.size(), candidateDuration);
-                            } catch (Exception e) {
-                                long candidateDuration = System.currentTimeMillis() - candidateStartTime;
-                                timings.put(index, candidateDuration);
-                                log.error("候选记忆 {}/{} 处理异常，耗时：{}ms，事实：{}",
-                                        index + 1, candidateMemories.size(), candidateDuration, memory.getFact(), e);
-                            }
-                        }, executor);
-                    }).collect(Collectors.toList());
-
-            // 等待所有任务完成
-            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
-            long totalDuration = System.currentTimeMillis() - totalStartTime;
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < candidateMemories.size(); from += batchSize) {
+            List<CandidateMemory> batch = candidateMemories.subList(from,
+                    Math.min(from + batchSize, candidateMemories.size()));
 
-        } catch (Exception e) {
-            log.error("并行处理候选记忆异常", e);
+            CompletableFuture<Void> task;
+            try {
+                task = messageUpdateStage.processCandidatesBatchAsync(sessionId, batch, executor);
+            } catch (Exception e) {
+                task = CompletableFuture.failedFuture(e);
+            }
+            tasks.add(task.<Void>handle((ignored, ex) -> {
+                if (ex != null) {
+                    log.error("候选记忆批次处理异常，批次大小：{}", batch.size(), ex);
+                }
+                return null;
+            }));
         }
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]))
+                .thenRun(() -> log.debug("========== {} 个候选记忆批量处理完成，{} 次决策调用，总耗时：{}ms ==========",
+                        candidateMemories.size(), tasks.size(), System.currentTimeMillis() - totalStartTime));
     }
 
     @Override
@@ -168,4 +288,9 @@ public class MemoryUpdateServiceImpl implements MemoryUpdateService {
                 updatedCount.get(),
                 deletedCount.get());
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getDecisionStatistics() {
+        return messageUpdateStage.getDecisionStatistics();
+    }
+}
@@ -1,5 +1,6 @@
 package com.memosystem.service.impl;
 
+import com.memosystem.adapter.llm.LLMCallContext;
 import com.memosystem.adapter.llm.LLMClient;
 import com.memosystem.adapter.storage.QdrantLocalClient;
 import com.memosystem.config.MemorySystemProperties;
@@ -12,7 +13,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service("mem0MessageUpdateStage")
 @Slf4j
@@ -29,6 +38,10 @@ public class MessageUpdateStage {
     @Autowired
     private MemorySystemProperties memoryConfig;
 
+    private final LongAdder fastPathAdds = new LongAdder();
+    private final LongAdder fastPathNoops = new LongAdder();
+    private final LongAdder llmDecisions = new LongAdder();
+
     /**
      * 根据候选记忆做出决策并执行相应的记忆操作
      * 对于每个候选记忆：
@@ -75,6 +88,237 @@ public class MessageUpdateStage {
         }
     }
 
+    /**
+     * 异步处理单个候选记忆
+     * 向量生成与检索在给定线程池中执行，LLM 决策通过非阻塞调用完成，
+     * 等待 LLM 响应期间不占用线程池线程
+     *
+     * @param sessionId       会话 ID
+     * @param candidateMemory 候选记忆
+     * @param executor        执行向量检索与数据库操作的线程池
+     * @return 处理完成的 Future
+     */
+    public CompletableFuture<Void> processSingleCandidateAsync(String sessionId, CandidateMemory candidateMemory,
+            Executor executor) {
+        if (candidateMemory == null) {
+            log.warn("候选记忆为空");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> prepareDecision(sessionId, candidateMemory), executor)
+                .thenCompose(context -> {
+                    if (context.action != null) {
+                        return CompletableFuture.completedFuture(context);
+                    }
+                    log.debug("步骤4: 异步调用LLM进行决策");
+                    llmDecisions.increment();
+                    return LLMCallContext.withSession(sessionId,
+                            () -> llmClient.chatAsync(List.of(context.decisionPrompt)))
+                            .handle((llmDecision, ex) -> {
+                                context.action = ex == null
+                                        ? parseLLMDecision(llmDecision)
+                                        : decideByFallback(context, ex);
+                                return context;
+                            });
+                })
+                .thenAcceptAsync(context -> {
+                    log.debug("步骤5: 执行数据库操作 - {}", context.action);
+                    executeAction(sessionId, context.action, candidateMemory, context.candidateEmbedding,
+                            context.similarMemories);
+                    log.debug("候选记忆处理成功: {}", candidateMemory.getFact());
+                }, executor);
+    }
+
+    /**
+     * 批量处理一组候选记忆
+     * 所有候选记忆及其相似记忆合并为一次 LLM 决策调用，按返回的 {"memory":[...]} 逐条应用操作；
+     * 某条候选记忆缺少决策或整次调用失败时，对其使用备选策略
+     *
+     * @param sessionId         会话 ID
+     * @param candidateMemories 候选记忆列表
+     * @param executor          执行向量检索与数据库操作的线程池
+     * @return 处理完成的 Future
+     */
+    public CompletableFuture<Void> processCandidatesBatchAsync(String sessionId,
+            List<CandidateMemory> candidateMemories, Executor executor) {
+        if (candidateMemories == null || candidateMemories.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+                    List<DecisionContext> contexts = new ArrayList<>(candidateMemories.size());
+                    for (CandidateMemory candidateMemory : candidateMemories) {
+                        contexts.add(prepareLocally(sessionId, candidateMemory));
+                    }
+                    return contexts;
+                }, executor)
+                .thenCompose(contexts -> decideAndApplyBatchAsync(sessionId, contexts, executor));
+    }
+
+    /**
+     * 异步完成单个候选记忆的决策准备：生成向量、检索相似记忆并尝试快速路径决策
+     * 用于流式抽取：候选记忆一到达就开始准备，与模型生成后续事实重叠，全部到达后再批量决策
+     *
+     * @param sessionId       会话 ID
+     * @param candidateMemory 候选记忆
+     * @param executor        执行向量检索的线程池
+     * @return 决策上下文的 Future，快速路径已决策时 action 不为空
+     */
+    CompletableFuture<DecisionContext> prepareCandidateAsync(String sessionId, CandidateMemory candidateMemory,
+            Executor executor) {
+        return CompletableFuture.supplyAsync(() -> prepareLocally(sessionId, candidateMemory), executor);
+    }
+
+    /**
+     * 对已完成准备的一组候选记忆批量决策并执行操作
+     * 快速路径未决策的候选记忆合并为一次 LLM 调用
+     *
+     * @param sessionId 会话 ID
+     * @param contexts  决策上下文（来自 prepareCandidateAsync）
+     * @param executor  执行数据库操作的线程池
+     * @return 处理完成的 Future
+     */
+    CompletableFuture<Void> decideAndApplyBatchAsync(String sessionId, List<DecisionContext> contexts,
+            Executor executor) {
+        // 快速路径已决策的候选记忆不再提交给 LLM
+        List<DecisionContext> pending = new ArrayList<>();
+        for (DecisionContext context : contexts) {
+            if (context.action == null) {
+                pending.add(context);
+            }
+        }
+
+        CompletableFuture<List<DecisionContext>> decided;
+        if (pending.isEmpty()) {
+            decided = CompletableFuture.completedFuture(contexts);
+        } else {
+            log.debug("步骤4: 批量调用LLM进行决策，候选记忆数: {}/{}", pending.size(), contexts.size());
+            llmDecisions.add(pending.size());
+            String batchPrompt = buildBatchDecisionPrompt(pending);
+            decided = LLMCallContext.withSession(sessionId, () -> llmClient.chatAsync(List.of(batchPrompt)))
+                    .handle((llmDecision, ex) -> {
+                        Map<String, String> actions = ex == null
+                                ? parseBatchDecision(llmDecision)
+                                : Collections.emptyMap();
+                        for (int i = 0; i < pending.size(); i++) {
+                            DecisionContext context = pending.get(i);
+                            String action = actions.get(batchFactId(i));
+                            context.action = action != null
+                                    ? action
+                                    : decideByFallback(context, ex != null ? ex
+                                            : new IllegalStateException("批量决策结果缺少 " + batchFactId(i)));
+                        }
+                        return contexts;
+                    });
+        }
+
+        return decided
+                .thenAcceptAsync(decidedContexts -> {
+                    for (DecisionContext context : decidedContexts) {
+                        try {
+                            log.debug("步骤5: 执行数据库操作 - {}", context.action);
+                            executeAction(sessionId, context.action, context.candidateMemory,
+                                    context.candidateEmbedding, context.similarMemories);
+                        } catch (Exception e) {
+                            log.error("处理候选记忆异常: {}", context.candidateMemory.getFact(), e);
+                        }
+                    }
+                }, executor);
+    }
+
+    /**
+     * 构建批量决策提示：决策规则只出现一次，每条事实附带各自的相似记忆
+     */
+    private String buildBatchDecisionPrompt(List<DecisionContext> contexts) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append(MemoryPrompts.CHINESE_MEMORY_DECISION_PROMPT).append("\n");
+        prompt.append(MemoryPrompts.BATCH_MEMORY_DECISION_INSTRUCTION).append("\n");
+
+        for (int i = 0; i < contexts.size(); i++) {
+            DecisionContext context = contexts.get(i);
+            CandidateMemory candidate = context.candidateMemory;
+            prompt.append("【事实 ").append(batchFactId(i)).append("】\n");
+            prompt.append("事实：").append(candidate.getFact()).append("\n");
+            prompt.append("分类：").append(candidate.getCategory()).append("\n");
+            prompt.append("置信度：").append(String.format("%.2f", candidate.getConfidence())).append("\n");
+
+            if (context.similarMemories.isEmpty()) {
+                prompt.append("现有相似记忆：无\n\n");
+                continue;
+            }
+            prompt.append("现有相似记忆：\n");
+            for (int j = 0; j < context.similarMemories.size(); j++) {
+                MemorySimilarity sim = context.similarMemories.get(j);
+                prompt.append(String.format("  %d.（语义相似度：%.2f%%）%s（分类：%s）\n",
+                        j + 1,
+                        sim.getSimilarityScore() * 100,
+                        sim.getCandidateMemory().getFact(),
+                        sim.getCandidateMemory().getCategory()));
+            }
+            prompt.append("\n");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * 批量决策中第 index 条事实的编号
+     */
+    private static String batchFactId(int index) {
+        return "f" + index;
+    }
+
+    /**
+     * 解析批量决策结果：{"memory": [{"id": "f0", "event": "ADD"}, ...]}
+     *
+     * @return 事实编号到操作的映射，解析失败时为空
+     */
+    private Map<String, String> parseBatchDecision(String llmResponse) {
+        Map<String, String> actions = new HashMap<>();
+        try {
+            com.google.gson.JsonObject jsonObject = com.google.gson.JsonParser.parseString(extractJsonPart(llmResponse))
+                    .getAsJsonObject();
+            com.google.gson.JsonArray memoryArray = jsonObject.getAsJsonArray("memory");
+            if (memoryArray == null) {
+                return actions;
+            }
+
+            for (com.google.gson.JsonElement element : memoryArray) {
+                com.google.gson.JsonObject item = element.getAsJsonObject();
+                if (!item.has("id") || !item.has("event")) {
+                    continue;
+                }
+                String action = normalizeEvent(item.get("event").getAsString());
+                if (action != null) {
+                    actions.put(item.get("id").getAsString().trim(), action);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("批量决策结果解析失败: {}", e.getMessage());
+        }
+        log.debug("批量决策解析完成，得到 {} 条决策", actions.size());
+        return actions;
+    }
+
+    /**
+     * 规范化操作名称，无法识别时返回 null
+     */
+    private static String normalizeEvent(String event) {
+        String upper = event == null ? "" : event.toUpperCase();
+        if (upper.contains("ADD")) {
+            return "ADD";
+        }
+        if (upper.contains("UPDATE")) {
+            return "UPDATE";
+        }
+        if (upper.contains("DELETE")) {
+            return "DELETE";
+        }
+        if (upper.contains("NOOP") || upper.contains("NONE")) {
+            return "NOOP";
+        }
+        return null;
+    }
+
     /**
      * 处理单个候选记忆
      * 流程步骤:
@@ -84,39 +328,152 @@ public class MessageUpdateStage {
      * [步骤7] 执行操作
      */
     private void processCandidate(String sessionId, CandidateMemory candidateMemory) {
+        DecisionContext context = prepareDecision(sessionId, candidateMemory);
+
+        // 步骤4：调用LLM进行决策（带容错处理），快速路径已决策时跳过
+        if (context.action == null) {
+            decideByLLM(context);
+        }
+
+        // 步骤5：执行操作
+        log.debug("步骤5: 执行数据库操作 - {}", context.action);
+        executeAction(sessionId, context.action, candidateMemory, context.candidateEmbedding,
+                context.similarMemories);
+    }
+
+    /**
+     * 同步调用 LLM 进行决策，失败时使用备选策略
+     */
+    private void decideByLLM(DecisionContext context) {
+        log.debug("步骤4: 调用LLM进行决策");
+        llmDecisions.increment();
+        try {
+            String llmDecision = LLMCallContext.withSession(context.sessionId,
+                    () -> llmClient.chat(List.of(context.decisionPrompt)));
+            context.action = parseLLMDecision(llmDecision);
+            log.debug("LLM决策完成，结果: {}", context.action);
+        } catch (Exception e) {
+            context.action = decideByFallback(context, e);
+        }
+    }
+
+    /**
+     * 生成向量、检索相似记忆并尝试快速路径决策（不构建单条决策提示）
+     */
+    private DecisionContext prepareLocally(String sessionId, CandidateMemory candidateMemory) {
+        DecisionContext context = retrieveNeighbours(sessionId, candidateMemory);
+        context.action = decideLocally(context);
+        return context;
+    }
+
+    /**
+     * 决策前的准备：生成向量、检索相似记忆，快速路径无法决策时构建决策提示
+     */
+    private DecisionContext prepareDecision(String sessionId, CandidateMemory candidateMemory) {
+        DecisionContext context = retrieveNeighbours(sessionId, candidateMemory);
+
+        // 快速路径：明确的情况本地决策，无需构建提示
+        context.action = decideLocally(context);
+        if (context.action != null) {
+            return context;
+        }
+
+        // 步骤3：构建决策提示
+        log.debug("步骤3: 构建LLM决策提示");
+        context.decisionPrompt = buildDecisionPrompt(candidateMemory, context.similarMemories);
+        return context;
+    }
+
+    /**
+     * 决策快速路径：在调用 LLM 之前本地处理明确的情况
+     * - 没有相似记忆：ADD
+     * - 最高相似度不低于阈值（几乎是已有记忆的复述）：NOOP
+     * 其余情况返回 null，交给 LLM 决策
+     */
+    private String decideLocally(DecisionContext context) {
+        MemorySystemProperties.Decision config = memoryConfig.getDecision();
+        if (!config.isFastPathEnabled()) {
+            return null;
+        }
+
+        if (context.similarMemories.isEmpty()) {
+            fastPathAdds.increment();
+            log.debug("快速路径决策: ADD（无相似记忆） - 事实: {}", context.candidateMemory.getFact());
+            return "ADD";
+        }
+
+        double maxSimilarity = context.similarMemories.stream()
+                .mapToDouble(MemorySimilarity::getSimilarityScore)
+                .max()
+                .orElse(0.0);
+        if (maxSimilarity >= config.getNoopSimilarityThreshold()) {
+            fastPathNoops.increment();
+            log.debug("快速路径决策: NOOP（相似度 {}） - 事实: {}", maxSimilarity, context.candidateMemory.getFact());
+            return "NOOP";
+        }
+        return null;
+    }
+
+    /**
+     * 获取决策统计信息：快速路径命中数与 LLM 决策数
+     */
+    public String getDecisionStatistics() {
+        long adds = fastPathAdds.sum();
+        long noops = fastPathNoops.sum();
+        long llm = llmDecisions.sum();
+        long total = adds + noops + llm;
+        return String.format("快速路径 ADD: %d, 快速路径 NOOP: %d, LLM 决策: %d, 快速路径命中率: %.2f%%",
+                adds, noops, llm, total == 0 ? 0.0 : (adds + noops) * 100.0 / total);
+    }
+
+    /**
+     * 生成候选记忆的向量并检索相似的已有记忆
+     */
+    private DecisionContext retrieveNeighbours(String sessionId, CandidateMemory candidateMemory) {
         log.debug("步骤1: 生成候选记忆的向量表示 - 事实: {}", candidateMemory.getFact());
 
         // 步骤1：获取候选记忆的向量表示
-        String candidateText = candidateMemory.getFact();
-        List<Float> candidateEmbedding = embeddingService.embed(candidateText);
-        log.debug("向量生成完成，维度: {}", candidateEmbedding.size());
+        DecisionContext context = new DecisionContext(sessionId, candidateMemory);
+        context.candidateEmbedding = embeddingService.embed(candidateMemory.getFact());
+        log.debug("向量生成完成，维度: {}", context.candidateEmbedding.size());
 
         // 步骤2：在向量数据库中检索相似的已有记忆
         log.debug("步骤2: 搜索相似的已有记忆");
-        List<MemorySimilarity> similarMemories = vectorDb.searchSimilarMemoriesWithScore(sessionId, candidateEmbedding,
+        context.similarMemories = vectorDb.searchSimilarMemoriesWithScore(sessionId, context.candidateEmbedding,
                 memoryConfig.getUpdateSearchTopK());
-        log.debug("相似记忆搜索完成，找到: {} 条", similarMemories.size());
+        log.debug("相似记忆搜索完成，找到: {} 条", context.similarMemories.size());
+        return context;
+    }
 
-        // 步骤3：构建决策提示
-        log.debug("步骤3: 构建LLM决策提示");
-        String decisionPrompt = buildDecisionPrompt(candidateMemory, similarMemories);
+    /**
+     * LLM 决策失败时使用备选策略
+     */
+    private String decideByFallback(DecisionContext context, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        log.warn("LLM决策调用失败，使用备选策略: {}", cause.getMessage());
+        // 备选策略的 "NONE" 规范化为 "NOOP"，与 LLM 决策结果一致
+        String action = normalizeEvent(makeDecisionByFallback(context.candidateMemory, context.similarMemories));
+        log.debug("备选策略决策完成，结果: {}", action);
+        return action;
+    }
 
-        // 步骤4：调用LLM进行决策（带容错处理）
-        log.debug("步骤4: 调用LLM进行决策");
-        String action;
-        try {
-            String llmDecision = llmClient.chat(List.of(decisionPrompt));
-            action = parseLLMDecision(llmDecision);
-            log.debug("LLM决策完成，结果: {}", action);
-        } catch (Exception e) {
-            log.warn("LLM决策调用失败，使用备选策略: {}", e.getMessage());
-            action = makeDecisionByFallback(candidateMemory, similarMemories);
-            log.debug("备选策略决策完成，结果: {}", action);
+    /**
+     * 单个候选记忆在决策各阶段之间传递的状态
+     */
+    static class DecisionContext {
+        private final String sessionId;
+        private final CandidateMemory candidateMemory;
+        private List<Float> candidateEmbedding;
+        private List<MemorySimilarity> similarMemories;
+        private String decisionPrompt;
+        private String action;
+
+        DecisionContext(String sessionId, CandidateMemory candidateMemory) {
+            this.sessionId = sessionId;
+            this.candidateMemory = candidateMemory;
         }
-
-        // 步骤5：执行操作
-        log.debug("步骤5: 执行数据库操作 - {}", action);
-        executeAction(sessionId, action, candidateMemory, candidateEmbedding, similarMemories);
     }
 
     /**
@@ -1,114 +1,185 @@
 package com.memosystem.service.impl;
 
+import com.memosystem.adapter.storage.ConversationRepository;
+import com.memosystem.common.util.TokenEstimator;
 import com.memosystem.config.MemorySystemProperties;
 import com.memosystem.core.conversation.MessagePair;
 import com.memosystem.service.ShortTermMemoryService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 短期记忆服务实现
  * 使用内存缓存管理会话级别的临时记忆
  * 
  * 特点：
- * - 线程安全
- * - 自动淘汰超过最大容量的旧消息
- * - 支持 TTL 过期（可选）
+ * - 线程安全，读操作无锁（读取不可变快照）
+ * - 环形缓冲区自动淘汰超过最大容量的旧消息
+ * - 会话缓存有容量上限，按访问时间（TTL）过期，使用 W-TinyLFU 准入策略
  */
 @Service("mem0ShortTermMemoryService")
 @Slf4j
 public class ShortTermMemoryServiceImpl implements ShortTermMemoryService {
 
-    private final Map<String, SessionMemory> sessionMemories = new ConcurrentHashMap<>();
+    /**
+     * 降级为摘要行时，每条消息保留的 token 数
+     */
+    private static final int SUMMARY_TURN_TOKENS = 40;
+
+    /**
+     * 会话缓存：容量有上限，按访问时间过期，W-TinyLFU 准入
+     */
+    private Cache<String, SessionMemory> sessionMemories;
 
     @Autowired
     private MemorySystemProperties memoryConfig;
 
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    /**
+     * 根据配置创建会话缓存
+     */
+    @PostConstruct
+    private void initCache() {
+        MemorySystemProperties.ShortTermCache config = memoryConfig.getShortTermCache();
+        this.sessionMemories = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSessions())
+                .expireAfterAccess(Duration.ofMinutes(config.getExpireAfterAccessMinutes()))
+                .recordStats()
+                .build();
+        log.info("短期记忆会话缓存初始化完成：最大会话数={}, 访问过期={} 分钟",
+                config.getMaxSessions(), config.getExpireAfterAccessMinutes());
+    }
+
     /**
      * 会话内存容器
+     * 固定容量的环形缓冲区：写入时覆盖最旧的槽位（O(1) 淘汰），
+     * 每次写入后发布一份不可变快照，读操作只读取 volatile 快照，不加锁也不会被写入阻塞
      */
     private static class SessionMemory {
-        private final List<MessagePair> messages = new ArrayList<>();
-        private final ReadWriteLock lock = new ReentrantReadWriteLock();
-        private long lastAccessTime = System.currentTimeMillis();
-        private final int maxSize;
+        private final MessagePair[] ring;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private int head = 0;   // 最旧消息所在槽位（仅在写锁内访问）
+        private int size = 0;   // 当前消息数（仅在写锁内访问）
+        private volatile List<MessagePair> snapshot = Collections.emptyList();
 
         public SessionMemory(int maxSize) {
-            this.maxSize = maxSize;
+            this.ring = new MessagePair[Math.max(1, maxSize)];
         }
 
         public void addMessage(MessagePair messagePair) {
-            lock.writeLock().lock();
+            writeLock.lock();
             try {
-                messages.add(messagePair);
-                lastAccessTime = System.currentTimeMillis();
-
-                // 超过最大容量时，淘汰最早的消息
-                while (messages.size() > maxSize) {
-                    messages.remove(0);
-                }
+                append(messagePair);
             } finally {
-                lock.writeLock().unlock();
+                writeLock.unlock();
             }
         }
 
-        public List<MessagePair> getRecentMessages(int count) {
-            lock.readLock().lock();
+        /**
+         * 缓冲区中没有相同的消息对时才追加
+         * 写穿时消息对先写入存储，若会话恰好在此之后从存储加载，加载结果中已包含该消息
+         *
+         * @return 是否追加
+         */
+        public boolean addMessageIfAbsent(MessagePair messagePair) {
+            writeLock.lock();
             try {
-                lastAccessTime = System.currentTimeMillis();
-                int size = messages.size();
-                int start = Math.max(0, size - count);
-                return new ArrayList<>(messages.subList(start, size));
+                if (snapshot.contains(messagePair)) {
+                    return false;
+                }
+                append(messagePair);
+                return true;
             } finally {
-                lock.readLock().unlock();
+                writeLock.unlock();
             }
         }
 
+        public List<MessagePair> getRecentMessages(int count) {
+            List<MessagePair> current = snapshot;
+            int total = current.size();
+            int start = Math.max(0, total - Math.max(0, count));
+            return current.subList(start, total);
+        }
+
         public List<MessagePair> getAllMessages() {
-            lock.readLock().lock();
-            try {
-                lastAccessTime = System.currentTimeMillis();
-                return new ArrayList<>(messages);
-            } finally {
-                lock.readLock().unlock();
-            }
+            return snapshot;
         }
 
         public void clear() {
-            lock.writeLock().lock();
+            writeLock.lock();
             try {
-                messages.clear();
+                Arrays.fill(ring, null);
+                head = 0;
+                size = 0;
+                snapshot = Collections.emptyList();
             } finally {
-                lock.writeLock().unlock();
+                writeLock.unlock();
             }
         }
 
         public int size() {
-            lock.readLock().lock();
-            try {
-                return messages.size();
-            } finally {
-                lock.readLock().unlock();
+            return snapshot.size();
+        }
+
+        /**
+         * 写入环形缓冲区并发布快照（在写锁内调用）
+         */
+        private void append(MessagePair messagePair) {
+            if (size < ring.length) {
+                ring[(head + size) % ring.length] = messagePair;
+                size++;
+            } else {
+                // 已满：覆盖最旧的消息
+                ring[head] = messagePair;
+                head = (head + 1) % ring.length;
+            }
+            publishSnapshot();
+        }
+
+        /**
+         * 按时间顺序复制环形缓冲区并发布不可变快照（在写锁内调用）
+         */
+        private void publishSnapshot() {
+            MessagePair[] ordered = new MessagePair[size];
+            for (int i = 0; i < size; i++) {
+                ordered[i] = ring[(head + i) % ring.length];
             }
+            snapshot = List.of(ordered);
         }
     }
 
+    /**
+     * 写穿缓存：调用方先将消息对写入会话历史存储，再调用本方法更新缓存
+     * 查找、加载与追加在 compute 内原子完成：会话尚未缓存时先从存储加载，
+     * 已在缓冲区（包括刚加载的历史）中的消息不再重复追加
+     */
     @Override
     public void addMessage(String sessionId, MessagePair messagePair) {
-        SessionMemory memory = sessionMemories.computeIfAbsent(
-                sessionId,
-                k -> new SessionMemory(memoryConfig.getShortTermMemorySize()));
-        memory.addMessage(messagePair);
-        log.debug("短期记忆已添加，sessionId: {}, 当前容量: {}", sessionId, memory.size());
+        SessionMemory memory = sessionMemories.asMap().compute(sessionId, (id, existing) -> {
+            // 加载失败时不缓存，下次访问重新加载，避免缓存残缺的历史
+            SessionMemory target = existing != null ? existing : loadMemory(id);
+            if (target != null && !target.addMessageIfAbsent(messagePair)) {
+                log.debug("消息已在短期记忆中，sessionId: {}", id);
+            }
+            return target;
+        });
+        if (memory != null) {
+            log.debug("短期记忆已添加，sessionId: {}, 当前容量: {}", sessionId, memory.size());
+        }
     }
 
     @Override
@@ -131,10 +202,10 @@ public class ShortTermMemoryServiceImpl implements ShortTermMemoryService {
 
     /**
      * 获取或懒加载会话记忆
-     * 如果内存中没有，从 messages.json 加载
+     * 如果内存中没有，从会话历史存储加载
      */
     private SessionMemory getOrLoadSession(String sessionId) {
-        SessionMemory memory = sessionMemories.get(sessionId);
+        SessionMemory memory = sessionMemories.getIfPresent(sessionId);
         if (memory == null) {
             // 懒加载：从持久化存储加载
             memory = loadFromPersistence(sessionId);
@@ -143,24 +214,34 @@ public class ShortTermMemoryServiceImpl implements ShortTermMemoryService {
     }
 
     /**
-     * 从 messages.json 加载历史消息到短期缓存
+     * 从会话历史存储加载历史消息到短期缓存
+     * 没有历史的会话同样缓存一个空容器（负缓存），后续消息通过写穿追加，不再重复读取存储
      */
     private SessionMemory loadFromPersistence(String sessionId) {
-        try {
-            List<MessagePair> messages = com.memosystem.common.model.CommonFileRepository
-                    .loadRecentMessages(sessionId, "messages.json",
-                            memoryConfig.getShortTermMemorySize(), MessagePair.class);
+        SessionMemory memory = loadMemory(sessionId);
+        if (memory == null) {
+            return null;
+        }
+        // 并发加载同一会话时以先放入的为准
+        SessionMemory existing = sessionMemories.asMap().putIfAbsent(sessionId, memory);
+        return existing != null ? existing : memory;
+    }
 
-            if (messages.isEmpty()) {
-                return null;
-            }
+    /**
+     * 从会话历史存储读取最近的消息，构建会话记忆容器（不放入缓存），读取失败时返回 null
+     */
+    private SessionMemory loadMemory(String sessionId) {
+        try {
+            List<MessagePair> messages = conversationRepository.findRecentMessages(sessionId,
+                    memoryConfig.getShortTermMemorySize());
 
             SessionMemory memory = new SessionMemory(memoryConfig.getShortTermMemorySize());
             for (MessagePair msg : messages) {
                 memory.addMessage(msg);
             }
-
-            sessionMemories.put(sessionId, memory);
+            if (messages.isEmpty()) {
+                log.debug("会话无历史消息，缓存空的短期记忆，sessionId: {}", sessionId);
+            }
             return memory;
 
         } catch (Exception e) {
@@ -189,9 +270,71 @@ public class ShortTermMemoryServiceImpl implements ShortTermMemoryService {
         return context.toString();
     }
 
+    @Override
+    public String buildShortTermContext(String sessionId, int tokenBudget) {
+        List<MessagePair> messages = getAllMessages(sessionId);
+        if (messages.isEmpty() || tokenBudget <= 0) {
+            return "";
+        }
+
+        String header = "【最近对话历史】\n";
+        int remaining = tokenBudget - TokenEstimator.estimate(header);
+        LinkedList<String> turns = new LinkedList<>();
+        boolean summaryOnly = false;
+
+        // 从最新一轮开始填充预算
+        for (int i = messages.size() - 1; i >= 0 && remaining > 0; i--) {
+            MessagePair msg = messages.get(i);
+            String rendered = null;
+
+            if (!summaryOnly) {
+                String full = renderTurn(i + 1, msg.getUserMessage(), msg.getAiResponse());
+                int cost = TokenEstimator.estimate(full);
+                if (cost <= remaining) {
+                    rendered = full;
+                    remaining -= cost;
+                } else {
+                    // 一旦出现放不下的完整对话，更早的对话都只保留摘要行
+                    summaryOnly = true;
+                }
+            }
+
+            if (rendered == null) {
+                String summary = renderTurn(i + 1,
+                        TokenEstimator.truncate(msg.getUserMessage(), SUMMARY_TURN_TOKENS),
+                        TokenEstimator.truncate(msg.getAiResponse(), SUMMARY_TURN_TOKENS));
+                int cost = TokenEstimator.estimate(summary);
+                if (cost > remaining) {
+                    log.debug("短期上下文预算耗尽，丢弃更早的 {} 轮对话，sessionId: {}", i + 1, sessionId);
+                    break;
+                }
+                rendered = summary;
+                remaining -= cost;
+            }
+            turns.addFirst(rendered);
+        }
+
+        if (turns.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder context = new StringBuilder(header);
+        turns.forEach(context::append);
+        return context.toString();
+    }
+
+    /**
+     * 渲染一轮对话
+     */
+    private String renderTurn(int index, String userMessage, String aiResponse) {
+        return String.format("对话 %d:\n", index)
+                + "  用户: " + (userMessage != null ? userMessage : "") + "\n"
+                + "  AI: " + (aiResponse != null ? aiResponse : "") + "\n";
+    }
+
     @Override
     public void clearSession(String sessionId) {
-        SessionMemory memory = sessionMemories.remove(sessionId);
+        SessionMemory memory = sessionMemories.asMap().remove(sessionId);
         if (memory != null) {
             memory.clear();
             log.info("短期记忆已清空，sessionId: {}", sessionId);
@@ -200,10 +343,21 @@ public class ShortTermMemoryServiceImpl implements ShortTermMemoryService {
 
     @Override
     public int getMessageCount(String sessionId) {
-        SessionMemory memory = sessionMemories.get(sessionId);
+        SessionMemory memory = sessionMemories.getIfPresent(sessionId);
         return memory != null ? memory.size() : 0;
     }
 
+    @Override
+    public String getCacheStatistics() {
+        CacheStats stats = sessionMemories.stats();
+        return String.format("会话数: %d, 命中: %d, 未命中: %d, 命中率: %.2f%%, 淘汰: %d",
+                sessionMemories.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate() * 100,
+                stats.evictionCount());
+    }
+
     /**
      * 截断过长的文本
      */
@@ -0,0 +1,215 @@
+package com.memosystem.service.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.memosystem.common.exception.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分节的全局摘要
+ * 摘要按 "## 节名" 分节，每节为一组编号条目；增量更新模式下解析当前摘要，
+ * 应用 LLM 返回的补丁（add / modify / remove 条目）后重新渲染
+ *
+ * 解析时兼容自由格式的摘要：标题行（"## 节名" 或 "【节名】"）作为节名，编号或列表符号开头的行作为条目，
+ * 其余行并入上一条目（空行之后则作为新条目），节之前的内容归入"概览"
+ */
+@Slf4j
+final class SummaryDocument {
+
+    static final String DEFAULT_SECTION = "概览";
+
+    private static final Pattern HEADER = Pattern.compile("^(?:#{1,6}\\s*(.+?)|【([^】]+)】)\\s*$");
+    private static final Pattern ITEM = Pattern.compile("^(?:\\d+[.、)）]\\s*|[-*•]\\s+)(.*)$");
+
+    private final Map<String, List<String>> sections = new LinkedHashMap<>();
+
+    private SummaryDocument() {
+    }
+
+    /**
+     * 解析摘要文本，null 或空白时得到空文档
+     */
+    static SummaryDocument parse(String text) {
+        SummaryDocument document = new SummaryDocument();
+        if (text == null || text.isBlank()) {
+            return document;
+        }
+
+        String section = DEFAULT_SECTION;
+        boolean continuation = false;
+        for (String rawLine : text.split("\\R")) {
+            String line = rawLine.strip();
+            if (line.isEmpty()) {
+                continuation = false;
+                continue;
+            }
+            Matcher header = HEADER.matcher(line);
+            if (header.matches()) {
+                section = header.group(1) != null ? header.group(1) : header.group(2);
+                document.sections.computeIfAbsent(section, k -> new ArrayList<>());
+                continuation = false;
+                continue;
+            }
+            List<String> items = document.sections.computeIfAbsent(section, k -> new ArrayList<>());
+            Matcher item = ITEM.matcher(line);
+            if (item.matches()) {
+                if (!item.group(1).isEmpty()) {
+                    items.add(item.group(1));
+                    continuation = true;
+                }
+            } else if (continuation && !items.isEmpty()) {
+                items.set(items.size() - 1, items.get(items.size() - 1) + " " + line);
+            } else {
+                items.add(line);
+                continuation = true;
+            }
+        }
+        document.sections.values().removeIf(List::isEmpty);
+        return document;
+    }
+
+    /**
+     * 渲染为 "## 节名" + 编号条目的文本，编号从 1 开始，与补丁中的 item 对应
+     */
+    String render() {
+        StringBuilder sb = new StringBuilder();
+        sections.forEach((name, items) -> {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append("## ").append(name).append("\n");
+            for (int i = 0; i < items.size(); i++) {
+                sb.append(i + 1).append(". ").append(items.get(i)).append("\n");
+            }
+        });
+        return sb.toString().trim();
+    }
+
+    /**
+     * 应用 LLM 返回的补丁 {"ops": [...]}
+     * 条目编号均以应用前的文档为准：先执行 modify，再按编号从大到小执行 remove，最后执行 add；
+     * 节或编号无效的操作跳过
+     *
+     * @param response LLM 回复（可包含 JSON 之外的说明文字）
+     * @return 实际应用的操作数
+     * @throws JsonParseException 回复中没有可解析的补丁
+     */
+    int apply(String response) {
+        JsonArray ops;
+        try {
+            int firstBrace = response.indexOf('{');
+            int lastBrace = response.lastIndexOf('}');
+            if (firstBrace < 0 || lastBrace <= firstBrace) {
+                throw new JsonParseException("摘要补丁中没有 JSON 对象");
+            }
+            JsonObject patch = JsonParser.parseString(response.substring(firstBrace, lastBrace + 1)).getAsJsonObject();
+            ops = patch.getAsJsonArray("ops");
+        } catch (JsonParseException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new JsonParseException("解析摘要补丁失败：" + e.getMessage(), e);
+        }
+        if (ops == null) {
+            throw new JsonParseException("摘要补丁缺少 ops 字段");
+        }
+
+        int applied = 0;
+        Map<String, TreeSet<Integer>> removals = new HashMap<>();
+        List<String[]> additions = new ArrayList<>();
+        for (JsonElement element : ops) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject op = element.getAsJsonObject();
+            String type;
+            String section;
+            String text;
+            try {
+                type = stringField(op, "op").toLowerCase();
+                section = stringField(op, "section");
+                text = stringField(op, "text").replaceAll("\\s*\\R\\s*", " ");
+            } catch (RuntimeException e) {
+                // 字段不是字符串（如对象或数组），只跳过该操作
+                log.debug("跳过字段格式无效的摘要补丁操作：{}", op);
+                continue;
+            }
+            if (section.isEmpty()) {
+                section = DEFAULT_SECTION;
+            }
+
+            switch (type) {
+                case "add" -> {
+                    if (!text.isEmpty()) {
+                        additions.add(new String[]{section, text});
+                    }
+                }
+                case "modify" -> {
+                    int index = itemIndex(op, section);
+                    if (index >= 0 && !text.isEmpty()) {
+                        sections.get(section).set(index, text);
+                        applied++;
+                    }
+                }
+                case "remove" -> {
+                    int index = itemIndex(op, section);
+                    if (index >= 0) {
+                        removals.computeIfAbsent(section, k -> new TreeSet<>(Comparator.reverseOrder())).add(index);
+                    }
+                }
+                default -> log.debug("跳过未知的摘要补丁操作：{}", op);
+            }
+        }
+
+        for (Map.Entry<String, TreeSet<Integer>> entry : removals.entrySet()) {
+            List<String> items = sections.get(entry.getKey());
+            for (int index : entry.getValue()) {
+                items.remove(index);
+                applied++;
+            }
+        }
+        for (String[] addition : additions) {
+            sections.computeIfAbsent(addition[0], k -> new ArrayList<>()).add(addition[1]);
+            applied++;
+        }
+        sections.values().removeIf(List::isEmpty);
+        return applied;
+    }
+
+    /**
+     * 操作引用的条目下标（从 0 计），节不存在或编号越界时返回 -1
+     */
+    private int itemIndex(JsonObject op, String section) {
+        List<String> items = sections.get(section);
+        if (items == null || !op.has("item")) {
+            log.debug("摘要补丁引用的节或条目不存在：{}", op);
+            return -1;
+        }
+        try {
+            int index = op.get("item").getAsInt() - 1;
+            if (index >= 0 && index < items.size()) {
+                return index;
+            }
+        } catch (RuntimeException e) {
+            // 编号格式无效，按越界处理
+        }
+        log.debug("摘要补丁引用的条目编号越界：{}", op);
+        return -1;
+    }
+
+    private static String stringField(JsonObject obj, String name) {
+        JsonElement value = obj.get(name);
+        return value == null || value.isJsonNull() ? "" : value.getAsString().strip();
+    }
+}